@@ -0,0 +1,107 @@
+import java.io.IOException; // Ошибки записи отчетов и каталога.
+import java.nio.file.*; // Каталог для отчетов.
+import java.util.*; // Коллекции List, Map, EnumSet и др.
+import java.util.concurrent.*; // Исполнитель и Future для параллельных отчетов.
+import java.util.logging.Logger; // Журналирование ошибок отчетов.
+
+public class BatchRunner { // Пакетный режим: все выбранные отчеты формируются одновременно без меню.
+    private static final Logger logger = Logger.getLogger(BatchRunner.class.getName());
+
+    private final Sales analyzer; // Общий загруженный набор данных.
+    private final ReportGenerator reportGenerator;
+    private final Set<SalesReport> reports; // Отчеты для формирования.
+    private final double threshold; // Порог суммы для отчета о покупателях.
+    private final Path outputDir; // Каталог для файлов отчетов.
+    private final ReportSink.Format format; // Формат файлов отчетов.
+
+    public BatchRunner(Sales analyzer, ReportGenerator reportGenerator, Set<SalesReport> reports,
+                       double threshold, Path outputDir, ReportSink.Format format) {
+        this.analyzer = analyzer;
+        this.reportGenerator = reportGenerator;
+        this.reports = reports;
+        this.threshold = threshold;
+        this.outputDir = outputDir;
+        this.format = format;
+    }
+
+    public static boolean isBatch(String[] args) {
+        return Arrays.asList(args).contains("--batch");
+    }
+
+    public static BatchRunner fromArgs(Sales analyzer, ReportGenerator reportGenerator, String[] args) {
+        // --reports=total,popular,unpopular,customers,trends,copurchase,productcustomers,monthcustomers,quantiles
+        // (по умолчанию см. defaultReports), --threshold=сумма (по умолчанию 0), --out=каталог (по умолчанию текущий),
+        // --format=text|csv|jsonl (по умолчанию text).
+        Set<SalesReport> reports = defaultReports(analyzer);
+        double threshold = 0;
+        Path outputDir = Paths.get(".");
+        ReportSink.Format format = ReportSink.Format.TEXT;
+        for (String arg : args) {
+            if (arg.startsWith("--reports=")) {
+                reports = EnumSet.noneOf(SalesReport.class);
+                for (String key : arg.substring("--reports=".length()).split(",")) {
+                    reports.add(SalesReport.byKey(key.trim()));
+                }
+            } else if (arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+            } else if (arg.startsWith("--out=")) {
+                outputDir = Paths.get(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--format=")) {
+                format = ReportSink.Format.byKey(arg.substring("--format=".length()));
+            }
+        }
+        return new BatchRunner(analyzer, reportGenerator, reports, threshold, outputDir, format);
+    }
+
+    private static Set<SalesReport> defaultReports(Sales analyzer) {
+        // В приближенном режиме - отчеты, которые строятся по эскизам; иначе пять исходных отчетов.
+        // copurchase строит отдельный индекс и включается только явно через --reports.
+        if (analyzer.isSketchOnly()) {
+            Set<SalesReport> reports = EnumSet.allOf(SalesReport.class);
+            reports.removeIf(SalesReport::requiresExactData);
+            return reports;
+        }
+        return EnumSet.range(SalesReport.TOTAL, SalesReport.TRENDS);
+    }
+
+    public boolean run() throws IOException {
+        // Каждый отчет - отдельная задача; агрегаты общие и считаются один раз при первом обращении.
+        // Возвращает false, если хотя бы один отчет не сформирован.
+        Files.createDirectories(outputDir);
+        long started = System.nanoTime();
+        Map<SalesReport, Future<Long>> timings = new EnumMap<>(SalesReport.class);
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("batch-report");
+        try {
+            for (SalesReport report : reports) {
+                timings.put(report, executor.submit(() -> runReport(report)));
+            }
+            boolean success = true;
+            System.out.println("Отчеты сформированы в " + outputDir.toAbsolutePath().normalize() + ":");
+            for (Map.Entry<SalesReport, Future<Long>> entry : timings.entrySet()) {
+                SalesReport report = entry.getKey();
+                try {
+                    long nanos = entry.getValue().get();
+                    System.out.printf("  %-10s %8.1f мс  %s%n", report.getKey(), nanos / 1e6, report.getFileName(format));
+                } catch (ExecutionException e) {
+                    success = false;
+                    logger.severe("Отчет " + report.getKey() + " не сформирован: " + e.getCause());
+                    System.out.printf("  %-10s   ошибка  %s%n", report.getKey(), e.getCause().getMessage());
+                }
+            }
+            System.out.printf("Всего: %.1f мс%n", (System.nanoTime() - started) / 1e6);
+            return success;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long runReport(SalesReport report) throws IOException {
+        // Время формирования и записи одного отчета в наносекундах.
+        long start = System.nanoTime();
+        report.write(analyzer, reportGenerator, threshold, outputDir, format);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,4 @@
+// Интерфейс для разбора одной строки CSV в объект.
+public interface CSVParser<T> {
+    T parse(CsvRecord record); // Метод для преобразования полей строки в объект.
+}
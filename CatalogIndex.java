@@ -0,0 +1,147 @@
+import java.util.*; // Импорт коллекций: List, ArrayList, NoSuchElementException и др.
+import java.util.function.ToIntFunction; // Функция извлечения целочисленного ID из элемента справочника.
+
+public class CatalogIndex<T> { // Индекс справочника (товары, покупатели) по целочисленному ID.
+    // Плотный массив используется, если диапазон ID не более чем в DENSE_FACTOR раз больше числа элементов.
+    private static final int DENSE_FACTOR = 4;
+    private static final int DENSE_MIN_RANGE = 1024;
+    private static final int EMPTY = Integer.MIN_VALUE; // Маркер пустой ячейки в хеш-таблице.
+
+    private final String kind; // Название сущности для сообщений об ошибках.
+    private final List<T> items; // Элементы справочника в порядке порядковых номеров (ordinal).
+    private final int[] ids; // ID элемента по его порядковому номеру.
+
+    // Плотный режим: ordinal = dense[id - minId], -1 если ID отсутствует.
+    private final int minId;
+    private final int[] dense;
+
+    // Разреженный режим: открытая адресация с линейным пробированием.
+    private final int[] keys;
+    private final int[] values;
+    private final int mask;
+    private final int emptyIdOrdinal; // Порядковый номер элемента с ID, равным EMPTY (хранится вне таблицы), или -1.
+
+    public CatalogIndex(List<T> source, ToIntFunction<T> idExtractor, String kind) {
+        this.kind = kind;
+        this.items = new ArrayList<>(source);
+        int size = items.size();
+        this.ids = new int[size];
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) { // Один проход: собираем ID и их диапазон.
+            int id = idExtractor.applyAsInt(items.get(i));
+            ids[i] = id;
+            min = Math.min(min, id);
+            max = Math.max(max, id);
+        }
+
+        long range = size == 0 ? 0 : (long) max - min + 1;
+        if (range <= Math.max(DENSE_MIN_RANGE, (long) size * DENSE_FACTOR)) {
+            // ID компактны: индексируем обычным массивом.
+            this.minId = size == 0 ? 0 : min;
+            this.dense = new int[(int) range];
+            Arrays.fill(dense, -1);
+            this.keys = null;
+            this.values = null;
+            this.mask = 0;
+            this.emptyIdOrdinal = -1;
+            for (int i = 0; i < size; i++) {
+                int slot = ids[i] - minId;
+                if (dense[slot] >= 0) {
+                    throw duplicate(ids[i]);
+                }
+                dense[slot] = i;
+            }
+        } else {
+            // ID разрежены: хеш-таблица на примитивных массивах без упаковки в Integer.
+            int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+            this.minId = 0;
+            this.dense = null;
+            this.keys = new int[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+            int emptyId = -1;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == EMPTY) { // Такой ID совпал бы с маркером пустой ячейки.
+                    if (emptyId >= 0) {
+                        throw duplicate(ids[i]);
+                    }
+                    emptyId = i;
+                    continue;
+                }
+                int slot = findSlot(ids[i]);
+                if (keys[slot] != EMPTY) {
+                    throw duplicate(ids[i]);
+                }
+                keys[slot] = ids[i];
+                values[slot] = i;
+            }
+            this.emptyIdOrdinal = emptyId;
+        }
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean contains(int id) {
+        return ordinalOf(id) >= 0;
+    }
+
+    public int ordinalOf(int id) {
+        // Возвращает порядковый номер элемента или -1, если ID нет в справочнике.
+        if (dense != null) {
+            long slot = (long) id - minId;
+            return slot >= 0 && slot < dense.length ? dense[(int) slot] : -1;
+        }
+        if (id == EMPTY) {
+            return emptyIdOrdinal;
+        }
+        int slot = findSlot(id);
+        return keys[slot] == id ? values[slot] : -1;
+    }
+
+    public int requireOrdinal(int id) {
+        // То же, что ordinalOf, но отсутствующий ID считается ошибкой данных.
+        int ordinal = ordinalOf(id);
+        if (ordinal < 0) {
+            throw new NoSuchElementException(kind + " с ID " + id + " не найден в справочнике");
+        }
+        return ordinal;
+    }
+
+    public T get(int id) {
+        return items.get(requireOrdinal(id));
+    }
+
+    public T byOrdinal(int ordinal) {
+        return items.get(ordinal);
+    }
+
+    public int idAt(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public List<T> items() {
+        return Collections.unmodifiableList(items);
+    }
+
+    private int findSlot(int id) {
+        int slot = mix(id) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask; // Линейное пробирование.
+        }
+        return slot;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9; // Перемешивание битов, чтобы последовательные ID не слипались в кластеры.
+        return h ^ (h >>> 16);
+    }
+
+    private IllegalArgumentException duplicate(int id) {
+        return new IllegalArgumentException(kind + " с ID " + id + " встречается в справочнике несколько раз");
+    }
+}
@@ -0,0 +1,260 @@
+import java.util.*; // Коллекции List, ArrayList, Arrays и др.
+import java.util.concurrent.ForkJoinPool; // Пул потоков для параллельного подсчета.
+import java.util.concurrent.RecursiveAction; // Рекурсивное деление диапазона продуктов.
+
+public class CoPurchaseIndex { // "С этим товаром покупают": разреженная матрица покупатель x продукт и K соседей каждого продукта.
+    private static final int PRODUCTS_PER_LEAF = 64; // Продуктов в листовой задаче: мелкие листья выравнивают нагрузку.
+
+    public static class Related { // Продукт, купленный вместе с данным, и число общих покупателей.
+        private final Product product;
+        private final int customers;
+
+        Related(Product product, int customers) {
+            this.product = product;
+            this.customers = customers;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public int getCustomers() {
+            return customers;
+        }
+    }
+
+    private final CatalogIndex<Product> products;
+    // Сжатые строки (CSR): продукты покупателя c - customerProducts[customerStart[c] .. customerStart[c + 1]),
+    // без повторов и по возрастанию; покупатели продукта p - аналогично в productCustomers.
+    private final int[] customerStart;
+    private final int[] customerProducts;
+    private final int[] productStart;
+    private final int[] productCustomers;
+    private final int k; // Сколько соседей сохранено для каждого продукта.
+    private final int[][] neighbors; // Порядковые номера соседей по убыванию числа общих покупателей.
+    private final int[][] shared; // Число общих покупателей для соответствующего соседа.
+
+    private CoPurchaseIndex(CatalogIndex<Product> products, int[] customerStart, int[] customerProducts,
+                            int[] productStart, int[] productCustomers, int k) {
+        this.products = products;
+        this.customerStart = customerStart;
+        this.customerProducts = customerProducts;
+        this.productStart = productStart;
+        this.productCustomers = productCustomers;
+        this.k = k;
+        this.neighbors = new int[products.size()][];
+        this.shared = new int[products.size()][];
+    }
+
+    public static CoPurchaseIndex build(SalesTable sales, CatalogIndex<Product> products, CatalogIndex<Customer> customers,
+                                        int k, int parallelism) {
+        // Матрица строится сортировкой подсчетом за O(n), затем соседи всех продуктов считаются параллельно:
+        // для продукта X обходятся только его покупатели и их покупки, а не все пары продуктов.
+        if (k < 1) {
+            throw new IllegalArgumentException("Число соседей должно быть положительным: " + k);
+        }
+        int customerCount = customers.size();
+        int[] start = new int[customerCount + 1];
+        for (int row = 0; row < sales.size(); row++) {
+            start[customers.requireOrdinal(sales.customerId(row)) + 1]++;
+        }
+        for (int c = 0; c < customerCount; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] fill = Arrays.copyOf(start, customerCount);
+        int[] cells = new int[sales.size()];
+        for (int row = 0; row < sales.size(); row++) {
+            cells[fill[customers.requireOrdinal(sales.customerId(row))]++] = products.requireOrdinal(sales.productId(row));
+        }
+        // Повторные покупки одного продукта не усиливают связь: строки сортируются и сжимаются на месте.
+        int[] customerStart = new int[customerCount + 1];
+        int size = 0;
+        int[] productDegree = new int[products.size() + 1];
+        for (int c = 0; c < customerCount; c++) {
+            Arrays.sort(cells, start[c], start[c + 1]);
+            customerStart[c] = size;
+            for (int i = start[c]; i < start[c + 1]; i++) {
+                if (i == start[c] || cells[i] != cells[i - 1]) {
+                    cells[size++] = cells[i];
+                    productDegree[cells[i] + 1]++;
+                }
+            }
+        }
+        customerStart[customerCount] = size;
+        int[] customerProducts = Arrays.copyOf(cells, size);
+        // Транспонированная матрица: покупатели по продуктам, тоже по возрастанию.
+        for (int p = 0; p < products.size(); p++) {
+            productDegree[p + 1] += productDegree[p];
+        }
+        int[] productStart = productDegree;
+        int[] productFill = Arrays.copyOf(productStart, products.size());
+        int[] productCustomers = new int[size];
+        for (int c = 0; c < customerCount; c++) {
+            for (int i = customerStart[c]; i < customerStart[c + 1]; i++) {
+                productCustomers[productFill[customerProducts[i]]++] = c;
+            }
+        }
+        CoPurchaseIndex index = new CoPurchaseIndex(products, customerStart, customerProducts, productStart, productCustomers, k);
+        // Счетчики общих покупателей и список затронутых продуктов - по одной паре массивов на поток,
+        // а не на лист: листьев много, потоков - parallelism.
+        int productCount = products.size();
+        ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[][]{new int[productCount], new int[productCount]});
+        NeighborsTask task = index.new NeighborsTask(0, products.size(), parallelism > 1, scratch);
+        if (parallelism <= 1) {
+            try {
+                task.compute();
+            } finally {
+                scratch.remove(); // Текущий поток живет дольше построения: массивы не удерживаются.
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return index;
+    }
+
+    private class NeighborsTask extends RecursiveAction { // Соседи продуктов с порядковыми номерами [from, to).
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final boolean parallel;
+        private final ThreadLocal<int[][]> scratch; // {counts, touched} потока, выполняющего лист.
+
+        NeighborsTask(int from, int to, boolean parallel, ThreadLocal<int[][]> scratch) {
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+            this.scratch = scratch;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PRODUCTS_PER_LEAF) {
+                // computeNeighbors обнуляет затронутые счетчики, поэтому массивы потока переиспользуются без очистки.
+                int[][] arrays = scratch.get();
+                for (int product = from; product < to; product++) {
+                    computeNeighbors(product, arrays[0], arrays[1]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            NeighborsTask left = new NeighborsTask(from, middle, parallel, scratch);
+            NeighborsTask right = new NeighborsTask(middle, to, parallel, scratch);
+            if (parallel) {
+                invokeAll(left, right);
+            } else {
+                left.compute(); // Последовательный режим: те же листья обходятся в текущем потоке.
+                right.compute();
+            }
+        }
+    }
+
+    private void computeNeighbors(int product, int[] counts, int[] touched) {
+        int touchedCount = 0;
+        for (int i = productStart[product]; i < productStart[product + 1]; i++) {
+            int customer = productCustomers[i];
+            for (int j = customerStart[customer]; j < customerStart[customer + 1]; j++) {
+                int other = customerProducts[j];
+                if (other != product && counts[other]++ == 0) {
+                    touched[touchedCount++] = other;
+                }
+            }
+        }
+        // Ограниченная куча из k лучших, как в ProductRanking: в корне - худший из отобранных.
+        int[] heap = new int[Math.min(k, touchedCount)];
+        int size = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int other = touched[i];
+            if (size < heap.length) {
+                heap[size] = other;
+                siftUp(heap, size++, counts);
+            } else if (size > 0 && compare(other, heap[0], counts) < 0) {
+                heap[0] = other; // Новый кандидат лучше худшего из отобранных - заменяем корень.
+                siftDown(heap, size, counts);
+            }
+        }
+        // Извлекаем из кучи от худшего к лучшему и заполняем результат с конца.
+        int[] result = new int[size];
+        int[] resultShared = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            resultShared[i] = counts[result[i]];
+            heap[0] = heap[i];
+            siftDown(heap, i, counts);
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            counts[touched[i]] = 0;
+        }
+        neighbors[product] = result;
+        shared[product] = resultShared;
+    }
+
+    private int compare(int a, int b, int[] counts) {
+        // Порядок: по убыванию числа общих покупателей, при равенстве по возрастанию ID.
+        int byShared = Integer.compare(counts[b], counts[a]);
+        return byShared != 0 ? byShared : Integer.compare(products.idAt(a), products.idAt(b));
+    }
+
+    private void siftUp(int[] heap, int index, int[] counts) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(heap[index], heap[parent], counts) <= 0) {
+                break;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, int[] counts) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && compare(heap[left], heap[worst], counts) > 0) {
+                worst = left;
+            }
+            if (right < size && compare(heap[right], heap[worst], counts) > 0) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public List<Related> related(int productId, int limit) {
+        // До limit (не больше K) продуктов, чаще всего покупаемых теми же покупателями, что и productId.
+        int product = products.requireOrdinal(productId);
+        int count = Math.min(Math.max(0, limit), neighbors[product].length);
+        List<Related> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Related(products.byOrdinal(neighbors[product][i]), shared[product][i]));
+        }
+        return result;
+    }
+
+    public int customerCount(int productId) {
+        // Число различных покупателей продукта.
+        int product = products.requireOrdinal(productId);
+        return productStart[product + 1] - productStart[product];
+    }
+}
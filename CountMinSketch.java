@@ -0,0 +1,121 @@
+import java.util.*; // Коллекции Map, HashMap, Arrays и др.
+
+public class CountMinSketch { // Приближенные счетчики по целочисленным ключам в фиксированной памяти и отслеживание самых частых ключей.
+    private final int width; // Число счетчиков в строке: ошибка не больше epsilon * (сумма всех весов).
+    private final int depth; // Число строк: оценка верна с вероятностью не ниже 1 - delta.
+    private final long[] counts; // Счетчики depth x width подряд в одном массиве.
+    private final int capacity; // Сколько кандидатов в самые частые ключи хранится.
+    private final Map<Integer, Long> heavyHitters; // Кандидат -> оценка его веса.
+    private long minHeavy; // Наименьшая оценка среди кандидатов, когда их набралось capacity.
+    private long total; // Сумма всех добавленных весов.
+
+    public CountMinSketch(double epsilon, double delta, int capacity) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1) || capacity < 1) {
+            throw new IllegalArgumentException("Некорректные параметры Count-Min: epsilon " + epsilon
+                    + ", delta " + delta + ", кандидатов " + capacity);
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counts = new long[width * depth];
+        this.capacity = capacity;
+        this.heavyHitters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(int key, long weight) {
+        // Строки хешируются двойным хешированием h1 + i * h2; хеши одинаковы во всех экземплярах, поэтому их можно сливать.
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = Math.floorMod(h1 + row * h2, width);
+            long value = counts[row * width + column] += weight;
+            estimate = Math.min(estimate, value);
+        }
+        total += weight;
+        offer(key, estimate);
+    }
+
+    public long estimate(int key) {
+        // Оценка сверху: истинный вес не больше оценки, а превышение не больше epsilon * total с вероятностью 1 - delta.
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row * width + Math.floorMod(h1 + row * h2, width)]);
+        }
+        return estimate;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int[] top(int k) {
+        // До k ключей с наибольшей оценкой по убыванию; при равенстве раньше идет меньший ключ.
+        return heavyHitters.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.max(0, k))
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+
+    public CountMinSketch merge(CountMinSketch other) {
+        // Слияние с эскизом тех же размеров: счетчики складываются, кандидаты переоцениваются по сумме.
+        if (width != other.width || depth != other.depth) {
+            throw new IllegalArgumentException("Эскизы Count-Min разных размеров: " + width + "x" + depth
+                    + " и " + other.width + "x" + other.depth);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        Set<Integer> candidates = new HashSet<>(heavyHitters.keySet());
+        candidates.addAll(other.heavyHitters.keySet());
+        heavyHitters.clear();
+        minHeavy = 0;
+        for (int key : candidates) {
+            offer(key, estimate(key));
+        }
+        return this;
+    }
+
+    public long memoryBytes() {
+        // Счетчики плюс грубая оценка записей карты кандидатов.
+        return (long) counts.length * Long.BYTES + (long) capacity * 64;
+    }
+
+    private void offer(int key, long estimate) {
+        // Оценка кандидата только растет; новый ключ вытесняет кандидата с наименьшей оценкой.
+        if (heavyHitters.containsKey(key)) {
+            heavyHitters.put(key, estimate);
+            return;
+        }
+        if (heavyHitters.size() < capacity) {
+            heavyHitters.put(key, estimate);
+            if (heavyHitters.size() == capacity) {
+                minHeavy = Collections.min(heavyHitters.values());
+            }
+            return;
+        }
+        if (estimate <= minHeavy) {
+            return; // Обычный случай для редких ключей: без обхода кандидатов.
+        }
+        // Кандидаты могли вырасти с прошлого пересчета, поэтому минимум ищется заново.
+        Map.Entry<Integer, Long> weakest = Collections.min(heavyHitters.entrySet(), Map.Entry.comparingByValue());
+        if (estimate > weakest.getValue()) {
+            heavyHitters.remove(weakest.getKey());
+            heavyHitters.put(key, estimate);
+        }
+        minHeavy = Collections.min(heavyHitters.values());
+    }
+
+    static long mix(long value) {
+        // Финализатор SplitMix64: хорошее перемешивание битов последовательных ID.
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException; // Ошибки чтения файла.
+import java.io.UncheckedIOException; // Проброс IOException из параллельных задач.
+import java.nio.ByteBuffer; // Буфер для поиска границ строк.
+import java.nio.MappedByteBuffer; // Отображение фрагмента файла в память.
+import java.nio.channels.FileChannel; // Канал для отображения и позиционного чтения файла.
+import java.nio.file.*; // Работа с путями и открытием файлов.
+import java.util.*; // Коллекции List, ArrayList и др.
+import java.util.concurrent.ExecutionException; // Ошибка разбора в пуле заданного размера.
+import java.util.concurrent.ForkJoinPool; // Пул заданного размера для разбора фрагментов.
+import java.util.concurrent.atomic.LongAdder; // Подсчет строк по фрагментам для метрик.
+import java.util.function.BiConsumer; // Обработчик одной строки.
+import java.util.function.BinaryOperator; // Слияние накопителей фрагментов.
+import java.util.function.Function; // Сбор накопителей фрагментов в результат.
+import java.util.function.Supplier; // Фабрика накопителя для фрагмента.
+import java.util.stream.Collectors; // Сбор результатов параллельного разбора.
+import java.util.stream.Stream; // Поток накопителей фрагментов.
+import java.util.stream.IntStream; // Параллельный обход фрагментов.
+
+public class CsvLoader { // Потоковая загрузка CSV через отображение файла в память и параллельный разбор.
+    // Фрагменты не больше 256 МБ: отображение одного буфера ограничено 2 ГБ,
+    // а небольшие фрагменты лучше распределяются по потокам.
+    private static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 1024L * 1024;
+
+    private CsvLoader() {
+    }
+
+    public static <T> List<T> load(Path path, CSVParser<T> parser) throws IOException {
+        // Загрузка строк в список объектов; порядок строк файла сохраняется.
+        List<List<T>> chunks = loadChunks(path, ArrayList::new, (items, record) -> items.add(parser.parse(record)));
+        int total = chunks.stream().mapToInt(List::size).sum();
+        List<T> items = new ArrayList<>(total);
+        chunks.forEach(items::addAll);
+        return items;
+    }
+
+    public static <A> List<A> loadChunks(Path path, Supplier<A> accumulator, BiConsumer<A, CsvRecord> rowHandler) throws IOException {
+        return loadChunks(path, -1, accumulator, rowHandler);
+    }
+
+    public static <A> List<A> loadChunks(Path path, long limit, Supplier<A> accumulator, BiConsumer<A, CsvRecord> rowHandler) throws IOException {
+        // Файл делится на фрагменты по границам строк, каждый фрагмент разбирается в свой накопитель.
+        // Читаются первые limit байт файла (весь файл, если limit < 0).
+        // Возвращает накопители в порядке следования фрагментов в файле.
+        return parseChunks(path, limit, 0, accumulator, rowHandler, chunks -> chunks.collect(Collectors.toList()));
+    }
+
+    public static <A> A reduceChunks(Path path, long limit, int parallelism, Supplier<A> accumulator,
+                                     BiConsumer<A, CsvRecord> rowHandler, BinaryOperator<A> combiner) throws IOException {
+        // То же, но накопители фрагментов сливаются по мере готовности: одновременно в памяти
+        // лишь несколько накопителей на поток, а не по одному на каждый фрагмент файла.
+        // Фрагменты разбирают parallelism потоков, 1 - текущий поток, как в SalesAggregates.compute.
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + parallelism);
+        }
+        return parseChunks(path, limit, parallelism, accumulator, rowHandler,
+                chunks -> chunks.reduce(combiner).orElseGet(accumulator));
+    }
+
+    private static <A, R> R parseChunks(Path path, long limit, int parallelism, Supplier<A> accumulator,
+                                        BiConsumer<A, CsvRecord> rowHandler, Function<Stream<A>, R> finisher) throws IOException {
+        // parallelism 0 - общий пул потоков, 1 - последовательный разбор, иначе отдельный пул такого размера.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.PARSE, String.valueOf(path.getFileName()))) {
+            long size = limit < 0 ? channel.size() : Math.min(limit, channel.size());
+            long dataStart = nextLineStart(channel, 0, size); // Пропускаем заголовок.
+            long[] bounds = splitIntoChunks(channel, dataStart, size);
+            LongAdder rows = new LongAdder(); // Каждый фрагмент добавляет свое число строк один раз.
+            try {
+                IntStream chunks = IntStream.range(0, bounds.length - 1);
+                Stream<A> parsed = (parallelism == 1 ? chunks : chunks.parallel())
+                        .mapToObj(i -> {
+                            try {
+                                return parseRange(channel, bounds[i], bounds[i + 1], accumulator.get(), rowHandler, rows);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                R result = parallelism > 1 ? inPool(parallelism, () -> finisher.apply(parsed)) : finisher.apply(parsed);
+                timer.rows(rows.sum()).bytes(size);
+                return result;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (IllegalArgumentException e) {
+                SalesMetrics.get().parseError();
+                throw new IllegalArgumentException(path + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static <R> R inPool(int parallelism, Supplier<R> task) {
+        // Параллельный поток, запущенный из задачи пула, выполняется потоками этого пула, а не общего.
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(task::get).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause(); // Исходное исключение, без обертки пула.
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Разбор прерван", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long[] splitIntoChunks(FileChannel channel, long start, long end) throws IOException {
+        long length = end - start;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        long target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, length / (parallelism * 4L) + 1));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        long position = start;
+        while (end - position > target) {
+            // Сдвигаем границу на начало следующей строки, чтобы строки не разрывались.
+            long next = nextLineStart(channel, position + target, end);
+            if (next - position > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Строка длиннее 2 ГБ начиная со смещения " + position);
+            }
+            bounds.add(next);
+            position = next;
+        }
+        if (position < end) {
+            bounds.add(end);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long end) throws IOException {
+        // Позиция сразу после ближайшего '\n' начиная с from, или конец файла.
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    public static long completeLinesEnd(FileChannel channel, long from, long to) throws IOException {
+        // Позиция сразу после последнего '\n' в диапазоне [from, to), или from, если полных строк нет.
+        // Нужна, чтобы не разбирать строку, которую другой процесс еще дописывает.
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = to;
+        while (position > from) {
+            int length = (int) Math.min(buffer.capacity(), position - from);
+            buffer.clear().limit(length);
+            long blockStart = position - length;
+            while (buffer.hasRemaining() && channel.read(buffer, blockStart + buffer.position()) > 0) {
+                // Дочитываем блок целиком.
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            position = blockStart;
+        }
+        return from;
+    }
+
+    static <A> A parseRange(FileChannel channel, long start, long end, A accumulator, BiConsumer<A, CsvRecord> rowHandler) throws IOException {
+        return parseRange(channel, start, end, accumulator, rowHandler, new LongAdder());
+    }
+
+    private static <A> A parseRange(FileChannel channel, long start, long end, A accumulator,
+                                    BiConsumer<A, CsvRecord> rowHandler, LongAdder rows) throws IOException {
+        // Разбор строк в диапазоне [start, end), который начинается с начала строки.
+        // Число разобранных строк добавляется к rows.
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CsvRecord record = new CsvRecord(); // Один курсор на фрагмент, без выделения памяти на строку.
+        int limit = buffer.limit();
+        int lineStart = 0;
+        long count = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                contentEnd--; // Поддержка окончаний строк Windows.
+            }
+            if (contentEnd > lineStart) { // Пустые строки пропускаются.
+                record.reset(buffer, lineStart, contentEnd, start);
+                rowHandler.accept(accumulator, record);
+                count++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        rows.add(count);
+        return accumulator;
+    }
+}
@@ -0,0 +1,222 @@
+import java.nio.ByteBuffer; // Буфер с байтами файла (обычно отображенный в память).
+import java.nio.charset.StandardCharsets; // Кодировка UTF-8 для текстовых полей.
+import java.time.DateTimeException; // Некорректная дата на любом из путей разбора.
+import java.time.LocalDateTime; // Дата и время продажи.
+import java.time.Month; // Длина месяца при проверке даты.
+import java.time.Year; // Признак високосного года.
+import java.time.format.DateTimeFormatter; // Запасной разбор нестандартных форматов даты.
+
+public class CsvRecord { // Курсор по полям одной строки CSV без промежуточных объектов String.
+    private ByteBuffer buffer; // Байты файла или фрагмента.
+    private int position; // Текущая позиция внутри строки.
+    private int end; // Конец строки (исключительно).
+    private long base; // Смещение буфера от начала файла, для сообщений об ошибках.
+    private byte[] scratch = new byte[64]; // Переиспользуемый буфер для декодирования строк.
+
+    public static CsvRecord of(String line) {
+        // Обертка над готовой строкой, чтобы старые вызовы fromCSV(String) шли через тот же разбор.
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        CsvRecord record = new CsvRecord();
+        record.reset(ByteBuffer.wrap(bytes), 0, bytes.length, 0);
+        return record;
+    }
+
+    void reset(ByteBuffer buffer, int start, int end, long base) {
+        this.buffer = buffer;
+        this.base = base;
+        this.position = start;
+        this.end = end;
+    }
+
+    public int nextInt() {
+        skipSpaces();
+        int start = position;
+        boolean negative = false;
+        if (position < end && buffer.get(position) == '-') {
+            negative = true;
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < end) {
+            int b = buffer.get(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw error("Слишком большое число", start);
+            }
+            position++;
+            digits++;
+        }
+        if (digits == 0) {
+            throw error("Ожидалось целое число", start);
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw error("Слишком большое число", start);
+        }
+        finishField(start);
+        return (int) value;
+    }
+
+    public double nextDouble() {
+        int start = position;
+        String field = nextString();
+        try {
+            return Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            throw error("Ожидалось дробное число", start);
+        }
+    }
+
+    public long nextMoney() {
+        // Денежная сумма в копейках (см. Money.parse).
+        int start = position;
+        String field = nextString();
+        try {
+            return Money.parse(field);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw error("Ожидалась денежная сумма", start);
+        }
+    }
+
+    public String nextString() {
+        int fieldStart = position;
+        int fieldEnd = fieldEnd();
+        position = fieldEnd;
+        finishField(fieldStart);
+        // Обрезаем пробелы по краям, как это делал String.trim().
+        while (fieldStart < fieldEnd && isSpace(buffer.get(fieldStart))) {
+            fieldStart++;
+        }
+        while (fieldEnd > fieldStart && isSpace(buffer.get(fieldEnd - 1))) {
+            fieldEnd--;
+        }
+        int length = fieldEnd - fieldStart;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(fieldStart, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public LocalDateTime nextDateTime() {
+        skipSpaces();
+        int start = position;
+        int fieldEnd = fieldEnd();
+        int trimmedEnd = fieldEnd;
+        while (trimmedEnd > start && isSpace(buffer.get(trimmedEnd - 1))) {
+            trimmedEnd--;
+        }
+        if (trimmedEnd - start == 19 && isIsoLayout(start)) {
+            // Быстрый путь для фиксированного формата yyyy-MM-ddTHH:mm:ss.
+            LocalDateTime value;
+            try {
+                value = LocalDateTime.of(
+                        digits(start, 4), digits(start + 5, 2), digits(start + 8, 2),
+                        digits(start + 11, 2), digits(start + 14, 2), digits(start + 17, 2));
+            } catch (DateTimeException e) {
+                throw error("Некорректная дата", start); // Как и для прочих полей: строка считается ошибкой разбора.
+            }
+            position = fieldEnd;
+            finishField(start);
+            return value;
+        }
+        String field = nextString(); // Прочие варианты ISO (доли секунды, без секунд) разбирает стандартный парсер.
+        try {
+            return LocalDateTime.parse(field, DateTimeFormatter.ISO_DATE_TIME);
+        } catch (DateTimeException e) {
+            throw error("Некорректная дата", start);
+        }
+    }
+
+    public long nextEpochSecond() {
+        // Время продажи в секундах от эпохи (UTC) без создания LocalDateTime на быстром пути.
+        skipSpaces();
+        int start = position;
+        int fieldEnd = fieldEnd();
+        int trimmedEnd = fieldEnd;
+        while (trimmedEnd > start && isSpace(buffer.get(trimmedEnd - 1))) {
+            trimmedEnd--;
+        }
+        if (trimmedEnd - start == 19 && isIsoLayout(start)) {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            int hour = digits(start + 11, 2);
+            int minute = digits(start + 14, 2);
+            int second = digits(start + 17, 2);
+            if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                    || hour > 23 || minute > 59 || second > 59) {
+                throw error("Некорректная дата", start);
+            }
+            position = fieldEnd;
+            finishField(start);
+            return epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        }
+        return SalesTable.toEpochSecond(nextDateTime());
+    }
+
+    static long epochDay(int year, int month, int day) {
+        // Число дней от 1970-01-01 для пролептического григорианского календаря (как LocalDate.toEpochDay).
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private boolean isIsoLayout(int start) {
+        return buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-'
+                && (buffer.get(start + 10) == 'T' || buffer.get(start + 10) == 't')
+                && buffer.get(start + 13) == ':' && buffer.get(start + 16) == ':';
+    }
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw error("Некорректная дата", from);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private int fieldEnd() {
+        int i = position;
+        while (i < end && buffer.get(i) != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private void finishField(int fieldStart) {
+        // После значения допускаются только пробелы и разделитель.
+        skipSpaces();
+        if (position < end) {
+            if (buffer.get(position) != ',') {
+                throw error("Лишние символы в поле", fieldStart);
+            }
+            position++;
+        }
+    }
+
+    private void skipSpaces() {
+        while (position < end && isSpace(buffer.get(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private IllegalArgumentException error(String message, int offset) {
+        return new IllegalArgumentException(message + " (смещение " + (base + offset) + ")");
+    }
+}
@@ -16,9 +16,12 @@ public class Customer {
     }
 
     public static Customer fromCSV(String csvLine) {
-        String[] fields = csvLine.split(",");
-        int customerId = Integer.parseInt(fields[0].trim());
-        String customerName = fields[1].trim();
+        return fromCSV(CsvRecord.of(csvLine));
+    }
+
+    public static Customer fromCSV(CsvRecord record) {
+        int customerId = record.nextInt();
+        String customerName = record.nextString();
         return new Customer(customerId, customerName);
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+import java.util.*; // Коллекции List, ArrayList, Arrays и др.
+
+public class CustomerSpendIndex { // Покупатели, упорядоченные по убыванию суммы затрат.
+    private final SalesAggregates stats; // Источник сумм затрат (обновляется при добавлении продаж).
+    private final CatalogIndex<Customer> customers; // Справочник для сравнения по ID.
+    private final int[] order; // Порядковые номера покупателей по убыванию затрат.
+    private final int[] position; // Позиция покупателя в order, -1 если покупок нет.
+    private int size; // Число покупателей с покупками.
+
+    private CustomerSpendIndex(SalesAggregates stats, CatalogIndex<Customer> customers) {
+        this.stats = stats;
+        this.customers = customers;
+        this.order = new int[customers.size()];
+        this.position = new int[customers.size()];
+    }
+
+    public static CustomerSpendIndex build(SalesAggregates stats, CatalogIndex<Customer> customers) {
+        CustomerSpendIndex index = new CustomerSpendIndex(stats, customers);
+        Arrays.fill(index.position, -1);
+        for (int customer = 0; customer < stats.customerCount(); customer++) {
+            if (stats.customerCount(customer) > 0) { // Как и раньше, учитываются только покупатели с покупками.
+                index.order[index.size++] = customer;
+            }
+        }
+        // Сортировка один раз при построении; дальше порядок поддерживается точечными сдвигами.
+        index.sort(0, index.size - 1);
+        for (int i = 0; i < index.size; i++) {
+            index.position[index.order[i]] = i;
+        }
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int countAtLeast(long thresholdMinor) {
+        // Число покупателей с затратами не меньше порога, бинарным поиском за O(log n).
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (stats.customerSpend(order[mid]) >= thresholdMinor) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    int ordinalAt(int position) {
+        // Порядковый номер покупателя на позиции position, 0 <= position < size().
+        return order[position];
+    }
+
+    public List<Customer> slice(int from, int to) {
+        // Покупатели с позициями [from, to) в порядке убывания затрат.
+        int start = Math.max(0, Math.min(from, size));
+        int end = Math.max(start, Math.min(to, size));
+        List<Customer> result = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            result.add(customers.byOrdinal(order[i]));
+        }
+        return result;
+    }
+
+    void onPurchase(int customer) {
+        // Затраты покупателя выросли: сдвигаем его ближе к началу, пока порядок не восстановится.
+        // Стоимость пропорциональна числу обойденных покупателей, а не размеру справочника.
+        int i = position[customer];
+        if (i < 0) {
+            i = size++;
+            order[i] = customer;
+        }
+        while (i > 0 && compare(order[i - 1], customer) > 0) {
+            order[i] = order[i - 1];
+            position[order[i]] = i;
+            i--;
+        }
+        order[i] = customer;
+        position[customer] = i;
+    }
+
+    private void sort(int lo, int hi) {
+        // Быстрая сортировка порядковых номеров на месте, без упаковки в Integer; порядок полный, устойчивость не нужна.
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                for (int i = lo + 1; i <= hi; i++) {
+                    for (int j = i; j > lo && compare(order[j - 1], order[j]) > 0; j--) {
+                        swap(j - 1, j);
+                    }
+                }
+                return;
+            }
+            int pivot = order[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compare(order[i], pivot) < 0) {
+                    i++;
+                }
+                while (compare(order[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Рекурсия по меньшей части ограничивает глубину стека.
+            if (j - lo < hi - i) {
+                sort(lo, j);
+                lo = i;
+            } else {
+                sort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int customer = order[i];
+        order[i] = order[j];
+        order[j] = customer;
+    }
+
+    private int compare(int a, int b) {
+        // Порядок: по убыванию затрат, при равенстве по возрастанию ID.
+        int bySpend = Long.compare(stats.customerSpend(b), stats.customerSpend(a));
+        return bySpend != 0 ? bySpend : Integer.compare(customers.idAt(a), customers.idAt(b));
+    }
+}
@@ -0,0 +1,101 @@
+public class HyperLogLog { // Оценка числа различных ключей в фиксированной памяти: 2^precision однобайтовых регистров.
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+
+    private final int precision; // Число бит хеша, выбирающих регистр.
+    private final byte[] registers; // Наибольший ранг (позиция первой единицы) по регистру.
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Точность HyperLogLog должна быть от " + MIN_PRECISION
+                    + " до " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static int precisionFor(double relativeError) {
+        // Стандартная ошибка оценки 1.04 / sqrt(2^precision); берется наименьшая точность, укладывающаяся в ошибку.
+        if (!(relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("Некорректная ошибка HyperLogLog: " + relativeError);
+        }
+        int precision = (int) Math.ceil(2 * Math.log(1.04 / relativeError) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    public void add(long key) {
+        long hash = CountMinSketch.mix(key);
+        int register = (int) (hash >>> (64 - precision));
+        // Ранг по оставшимся битам; сторожевая единица ограничивает его при нулевом остатке.
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    public long estimate() {
+        // Улучшенная оценка Эртла (2017): без переключения на линейный подсчет и таблиц поправок,
+        // поэтому нет смещения на границе малых и больших мощностей.
+        int m = registers.length;
+        int q = 64 - precision; // Наибольший ранг - q + 1.
+        int[] histogram = new int[q + 2];
+        for (byte rank : registers) {
+            histogram[rank]++;
+        }
+        double z = m * tau(1 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m * m / (2 * Math.log(2) * z));
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY; // Все регистры пусты: оценка 0.
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        // Объединение множеств: поэлементный максимум регистров.
+        if (precision != other.precision) {
+            throw new IllegalArgumentException("HyperLogLog разной точности: " + precision + " и " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long memoryBytes() {
+        return registers.length;
+    }
+}
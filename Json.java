@@ -0,0 +1,49 @@
+import java.io.IOException; // Ошибки записи в приемник.
+import java.io.UncheckedIOException; // StringBuilder не бросает IOException.
+
+public final class Json { // Экранирование строк JSON для отчетов JSON Lines и HTTP-ответов.
+    private Json() {
+    }
+
+    public static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        try {
+            writeString(out, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public static void writeString(Appendable out, String value) throws IOException {
+        // Строка в кавычках; управляющие символы, кавычки и обратная косая черта экранируются.
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
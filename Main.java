@@ -1,5 +1,7 @@
 import java.nio.file.*; // Импортируем классы для работы с файлами и путями.
+import java.nio.channels.FileChannel; // Поиск конца последней полной строки sales.csv.
 import java.io.IOException; // Для обработки исключений, связанных с операциями ввода-вывода.
+import java.io.PrintWriter; // Копия отчета на консоль при потоковой записи в файл.
 import java.util.*; // Импортируем коллекции и утилиты, такие как List, Map и Scanner.
 import java.util.logging.*; // Для ведения логов (журналирования).
 
@@ -7,68 +9,170 @@ public class Main {
     private static final Logger logger = Logger.getLogger(Main.class.getName()); 
     // Создаем экземпляр логгера для записи сообщений о работе программы.
 
-    // Константы для имен файлов и отчетов.
+    // Константы для имен файлов (имена файлов отчетов - в SalesReport).
     private static final String SALES_FILE = "sales.csv";
     private static final String PRODUCTS_FILE = "products.csv";
     private static final String CUSTOMERS_FILE = "customers.csv";
-    private static final String TOTAL_SALES_REPORT = "total_sales_report.txt";
-    private static final String POPULAR_PRODUCTS_REPORT = "popular_products_report.txt";
-    private static final String UNPOPULAR_PRODUCTS_REPORT = "unpopular_products_report.txt";
-    private static final String CUSTOMERS_REPORT = "customers_report.txt";
-    private static final String SALES_TRENDS_REPORT = "sales_trends_report.txt";
+    private static final String SNAPSHOT_FILE = "sales.snapshot"; // Двоичный снимок для быстрого запуска.
 
     public static void main(String[] args) {
         logger.info("Start"); 
         // Логируем сообщение о старте программы.
 
+        boolean batch = BatchRunner.isBatch(args); // Пакетный режим без меню для ночных заданий.
+        int status = 0; // Код завершения пакетного режима.
         try {
-            // Загружаем данные о продажах, продуктах и клиентах из файлов.
-            List<Sale> sales = loadSales(SALES_FILE);
-            List<Product> products = loadProducts(PRODUCTS_FILE);
-            List<Customer> customers = loadCustomers(CUSTOMERS_FILE);
-
-            // Инициализируем анализатор данных и генератор отчетов.
-            Sales analyzer = new Sales(sales, products, customers);
-            ReportGenerator reportGenerator = new ReportGenerator();
+            Path splitTo = parsePath(args, "split-sales");
+            if (splitTo != null) {
+                // Разовая раскладка sales.csv по месяцам для работы с --sales-dir.
+                int count = SalesPartitions.split(Paths.get(SALES_FILE), splitTo);
+                System.out.println("Партиций записано в " + splitTo.toAbsolutePath().normalize() + ": " + count);
+                return;
+            }
+            long followPoll = parseFollow(args); // Период опроса sales.csv, 0 - слежение выключено.
+            boolean partitioned = parsePath(args, "sales-dir") != null; // Продажи в каталоге партиций по месяцам.
+            // Строки, дописанные в sales.csv во время загрузки, подхватит слежение.
+            long salesEnd = partitioned ? 0 : salesEnd(Paths.get(SALES_FILE), followPoll > 0);
+            Sales analyzer = loadAnalyzer(args, salesEnd);
+            ReportGenerator reportGenerator = new ReportGenerator(); // Инициализируем генератор отчетов.
+            if (batch) {
+                status = BatchRunner.fromArgs(analyzer, reportGenerator, args).run() ? 0 : 1;
+                return;
+            }
+            SalesFollower follower = new SalesFollower(Paths.get(SALES_FILE), analyzer, salesEnd, followPoll);
+            if (followPoll > 0 && partitioned) {
+                logger.warning("Слежение работает только с одним файлом " + SALES_FILE + ", для каталога партиций не включено");
+            } else if (followPoll > 0) {
+                follower.start(); // Новые строки sales.csv применяются к агрегатам по мере появления.
+            }
+            int port = SalesServer.parsePort(args);
+            if (port > 0) {
+                // Режим сервиса: вместо меню отчеты отдаются по HTTP, процесс работает до остановки.
+                SalesServer server = new SalesServer(analyzer, port);
+                server.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    server.close();
+                    follower.close();
+                }, "sales-shutdown"));
+                return;
+            }
             Scanner scanner = new Scanner(System.in); // Сканер для чтения ввода пользователя.
 
-            // Получаем статистику продаж по продуктам.
-            Map<Integer, Long> productSalesCount = analyzer.getProductSalesCount();
             boolean running = true; // Флаг для управления циклом программы.
 
             while (running) { // Основной цикл программы.
                 displayMenu(); // Выводим меню на экран.
 
                 int choice = scanner.nextInt(); // Считываем выбор пользователя.
-                switch (choice) { // Обрабатываем выбор пользователя.
-                    case 1:
-                        TotalSales(analyzer, reportGenerator); // Сумма всех продаж.
-                        break;
-                    case 2:
-                        PopularProducts(analyzer, reportGenerator, productSalesCount); // Популярные товары.
-                        break;
-                    case 3:
-                        UnpopularProducts(analyzer, reportGenerator, productSalesCount); // Непопулярные товары.
-                        break;
-                    case 4:
-                        CustomerSpending(analyzer, reportGenerator, scanner); // Топ клиентов.
-                        break;
-                    case 5:
-                        MonthlySalesTrends(analyzer, reportGenerator); // Тенденции продаж.
-                        break;
-                    case 6:
-                        running = false; // Завершаем программу.
-                        System.out.println("Закрыть приложение.");
-                        break;
-                    default:
-                        System.out.println("Неверный выбор, пожалуйста, попробуйте снова."); // Обрабатываем неверный ввод.
+                try {
+                    switch (choice) { // Обрабатываем выбор пользователя.
+                        case 1:
+                            TotalSales(analyzer, reportGenerator); // Сумма всех продаж.
+                            break;
+                        case 2:
+                            PopularProducts(analyzer, reportGenerator); // Популярные товары.
+                            break;
+                        case 3:
+                            UnpopularProducts(analyzer, reportGenerator); // Непопулярные товары.
+                            break;
+                        case 4:
+                            CustomerSpending(analyzer, reportGenerator, scanner); // Топ клиентов.
+                            break;
+                        case 5:
+                            MonthlySalesTrends(analyzer, reportGenerator); // Тенденции продаж.
+                            break;
+                        case 6:
+                            running = false; // Завершаем программу.
+                            System.out.println("Закрыть приложение.");
+                            break;
+                        default:
+                            System.out.println("Неверный выбор, пожалуйста, попробуйте снова."); // Обрабатываем неверный ввод.
+                    }
+                } catch (UnsupportedOperationException e) {
+                    System.out.println(e.getMessage()); // Отчет требует точных данных, а загружены только эскизы.
                 }
             }
             scanner.close(); // Закрываем сканер.
+            follower.close(); // Останавливаем слежение за файлом продаж.
             logger.info("Отчеты успешно сформированы."); // Логируем успешное завершение.
         } catch (IOException e) {
             logger.severe("Ошибка загрузки данных: " + e.getMessage()); // Логируем ошибку при работе с файлами.
+            status = 1;
+        } catch (IllegalArgumentException e) {
+            logger.severe("Некорректные данные: " + e.getMessage()); // Логируем нарушение целостности данных.
+            status = 1;
+        } finally {
+            if (batch) {
+                System.exit(status); // Планировщик заданий видит результат по коду завершения.
+            }
+        }
+    }
+
+    static Sales loadAnalyzer(String[] args, long salesEnd) throws IOException {
+        // Загружаем данные о продажах, продуктах и клиентах: из снимка, если CSV не менялись, иначе из файлов.
+        boolean offHeap = Arrays.asList(args).contains("--off-heap"); // Колонки продаж вне кучи.
+        Path salesDir = parsePath(args, "sales-dir");
+        if (salesDir != null) {
+            return loadPartitioned(args, salesDir);
+        }
+        SalesSketches.Config approx = SalesSketches.Config.parse(args); // --approx: эскизы в ограниченной памяти.
+        if (approx != null) {
+            return loadApproximate(approx, salesEnd, parseThreads(args));
+        }
+        SalesSnapshot snapshot = new SalesSnapshot(Paths.get(SNAPSHOT_FILE),
+                Paths.get(SALES_FILE), Paths.get(PRODUCTS_FILE), Paths.get(CUSTOMERS_FILE));
+        int threads = parseThreads(args); // Число потоков для агрегации и построения индексов при любом способе загрузки.
+        Sales analyzer;
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.LOAD, "snapshot")) {
+            analyzer = snapshot.load(offHeap, salesEnd);
+            if (analyzer != null) {
+                analyzer.setParallelism(threads); // Агрегаты из снимка, но индексы и эскизы строятся заново.
+                timer.rows(analyzer.getSalesTable().size());
+            }
+        }
+        if (analyzer == null) {
+            try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.LOAD, "csv")) {
+                SalesTable sales = SalesTable.load(Paths.get(SALES_FILE), salesEnd, offHeap);
+                List<Product> products = loadProducts(PRODUCTS_FILE);
+                List<Customer> customers = loadCustomers(CUSTOMERS_FILE);
+
+                // Инициализируем анализатор данных и сохраняем снимок вместе с агрегатами.
+                analyzer = new Sales(sales, products, customers);
+                analyzer.setParallelism(threads); // До сохранения снимка: агрегаты считаются при записи.
+                saveSnapshot(snapshot, analyzer, salesEnd);
+                timer.rows(sales.size()).bytes(salesEnd);
+            }
+        }
+        SalesMetrics.get().datasetLoaded(analyzer); // Размер набора данных в MBean и событии JFR.
+        return analyzer;
+    }
+
+    private static Sales loadApproximate(SalesSketches.Config config, long salesEnd, int threads) throws IOException {
+        // Приближенный режим: sales.csv читается потоково в эскизы, таблица продаж и точные агрегаты
+        // не создаются, поэтому снимок не читается и не сохраняется.
+        Sales analyzer;
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.LOAD, "approx")) {
+            analyzer = Sales.approximate(Paths.get(SALES_FILE), salesEnd, loadProducts(PRODUCTS_FILE),
+                    loadCustomers(CUSTOMERS_FILE), config, threads); // --threads, как и при точной загрузке.
+            timer.rows(analyzer.getSketches().getSalesCount()).bytes(salesEnd);
+        }
+        logger.info("Приближенный режим: эскизы занимают " + analyzer.getSketches().memoryBytes() + " байт");
+        SalesMetrics.get().datasetLoaded(analyzer);
+        return analyzer;
+    }
+
+    private static Sales loadPartitioned(String[] args, Path salesDir) throws IOException {
+        // Каталог партиций: при запуске читается только манифест, агрегаты закрытых месяцев - из кэша,
+        // а партиции отбираются каждым запросом по его интервалу (см. Sales.partitioned).
+        Sales analyzer;
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.LOAD, "partitions")) {
+            analyzer = Sales.partitioned(salesDir, loadProducts(PRODUCTS_FILE), loadCustomers(CUSTOMERS_FILE));
+            analyzer.setParallelism(parseThreads(args));
+            timer.rows(analyzer.getSalesCount());
         }
+        analyzer.setSketchConfig(SalesSketches.Config.parse(args));
+        SalesMetrics.get().datasetLoaded(analyzer);
+        return analyzer;
     }
 
     private static void displayMenu() { 
@@ -85,54 +189,102 @@ public class Main {
 
     // Методы для обработки каждого пункта меню:
     private static void TotalSales(Sales analyzer, ReportGenerator reportGenerator) {
-        double totalSalesAmount = analyzer.getTotalSalesAmount(); // Расчет общей суммы продаж.
-        System.out.println("Текущая сумма всех продаж: " + totalSalesAmount); 
-        String totalSalesReport = reportGenerator.TotalSalesReport(totalSalesAmount); 
-        // Формируем текст отчета.
-        reportGenerator.generateReport(TOTAL_SALES_REPORT, "Отчет об общем объеме продаж\n" + totalSalesReport); 
-        // Генерируем отчет в файл.
+        analyzer.view("menu/total", () -> { // Сумма на экране и в файле - из одной версии данных.
+            long totalSalesMinor = analyzer.getTotalSalesMinor(); // Расчет общей суммы продаж в копейках.
+            System.out.println("Текущая сумма всех продаж: " + Money.format(totalSalesMinor)); 
+            writeReport(SalesReport.TOTAL, analyzer, reportGenerator, 0, false); 
+            // Генерируем отчет в файл.
+            return null;
+        });
     }
 
-    private static void PopularProducts(Sales analyzer, ReportGenerator reportGenerator, Map<Integer, Long> productSalesCount) {
-        List<Product> topProducts = analyzer.getTopProducts(); // Получаем список популярных продуктов.
-        String topProductsReport = reportGenerator.PopularProductsReport(topProducts, productSalesCount); 
-        // Формируем текст отчета.
-        System.out.println(topProductsReport); 
-        reportGenerator.generateReport(POPULAR_PRODUCTS_REPORT, "Отчет о пяти самых популярных товарах: \n" + topProductsReport); 
-        // Генерируем отчет в файл.
+    private static void PopularProducts(Sales analyzer, ReportGenerator reportGenerator) {
+        writeReport(SalesReport.POPULAR, analyzer, reportGenerator, 0, true); 
+        // Отчет пишется в файл и одновременно выводится на экран.
     }
 
-    private static void UnpopularProducts(Sales analyzer, ReportGenerator reportGenerator, Map<Integer, Long> productSalesCount) {
-        List<Product> bottomProducts = analyzer.getUnpopularProducts(); // Получаем список непопулярных продуктов.
-        String bottomProductsReport = reportGenerator.UnpopularProductsReport(bottomProducts, productSalesCount); 
-        System.out.println(bottomProductsReport); 
-        reportGenerator.generateReport(UNPOPULAR_PRODUCTS_REPORT, "Отчет о пяти самых непопулярных товарах: \n" + bottomProductsReport); 
+    private static void UnpopularProducts(Sales analyzer, ReportGenerator reportGenerator) {
+        writeReport(SalesReport.UNPOPULAR, analyzer, reportGenerator, 0, true); 
     }
 
     private static void CustomerSpending(Sales analyzer, ReportGenerator reportGenerator, Scanner scanner) {
         System.out.print("Введите сумму для покупателей: ");
         double threshold = scanner.nextDouble(); // Читаем пороговую сумму.
-        List<Customer> topCustomers = analyzer.getTopCustomers(threshold); // Список покупателей с суммой больше порога.
-        Map<Integer, Long> customerPurchaseCount = analyzer.getCustomerPurchaseCount(); // Количество покупок по клиентам.
-        Map<Integer, Double> customerSpending = analyzer.getCustomerSpending(); // Суммы покупок по клиентам.
-        String topCustomersReport = reportGenerator.CustomersReport(topCustomers, customerPurchaseCount, customerSpending); 
-        System.out.println(topCustomersReport);
-        reportGenerator.generateReport(CUSTOMERS_REPORT, "Отчет о покупателях\n" + topCustomersReport); 
+        writeReport(SalesReport.CUSTOMERS, analyzer, reportGenerator, threshold, true); 
+        // Строки отчета идут в файл и на экран по мере формирования, без сборки всего текста в строку.
     }
 
     private static void MonthlySalesTrends(Sales analyzer, ReportGenerator reportGenerator) {
-        Map<String, Double> monthlyTrends = analyzer.getMonthlySalesTrends(); // Получаем данные о продажах по месяцам.
-        StringBuilder trendsReport = new StringBuilder("Тенденции продаж\n");
-        monthlyTrends.forEach((month, amount) -> trendsReport.append("Месяц: " + month + "        Сумма продаж: " + amount + "\n")); 
-        System.out.println(trendsReport.toString());
-        reportGenerator.generateReport(SALES_TRENDS_REPORT, trendsReport.toString()); // Генерируем отчет.
+        writeReport(SalesReport.TRENDS, analyzer, reportGenerator, 0, true); // Продажи по месяцам.
     }
 
-    // Методы для загрузки данных:
-    private static List<Sale> loadSales(String filename) throws IOException {
-        return loadData(filename, Sale::fromCSV); // Читаем данные о продажах.
+    private static void writeReport(SalesReport report, Sales analyzer, ReportGenerator reportGenerator,
+                                    double threshold, boolean print) {
+        // Потоковая запись отчета в текущий каталог; при print текст отчета дублируется на консоль.
+        try {
+            report.write(analyzer, reportGenerator, threshold, Paths.get("."), ReportSink.Format.TEXT,
+                    print ? new PrintWriter(System.out) : null);
+        } catch (IOException e) {
+            e.printStackTrace(); // Как и прежде, ошибка записи не прерывает работу меню.
+        }
+        if (print) {
+            System.out.println(); // Пустая строка после отчета, как при выводе текста целиком.
+        }
     }
 
+    private static int parseThreads(String[] args) {
+        // Аргумент --threads=N задает число потоков, --threads=0 - все доступные ядра.
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                int threads = Integer.parseInt(arg.substring("--threads=".length()));
+                return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+            }
+        }
+        return 1;
+    }
+
+    private static void saveSnapshot(SalesSnapshot snapshot, Sales analyzer, long salesEnd) {
+        try {
+            snapshot.save(analyzer, salesEnd);
+        } catch (IOException e) {
+            logger.warning("Не удалось сохранить снимок данных: " + e.getMessage()); // Работа продолжается без снимка.
+        }
+    }
+
+    private static Path parsePath(String[] args, String name) {
+        // Аргумент --name=путь; null, если не задан.
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                return Paths.get(arg.substring(name.length() + 3));
+            }
+        }
+        return null;
+    }
+
+    private static long salesEnd(Path salesFile, boolean follow) throws IOException {
+        // Граница загрузки sales.csv. При слежении файл может дописываться прямо сейчас, поэтому загрузка
+        // заканчивается на последнем '\n', а недописанную строку применит слежение. Без слежения файл считается
+        // законченным, и последняя строка без перевода строки тоже загружается.
+        try (FileChannel channel = FileChannel.open(salesFile, StandardOpenOption.READ)) {
+            return follow ? CsvLoader.completeLinesEnd(channel, 0, channel.size()) : channel.size();
+        }
+    }
+
+    private static long parseFollow(String[] args) {
+        // Аргумент --follow[=мс] включает слежение за sales.csv, по умолчанию опрос раз в 100 мс.
+        for (String arg : args) {
+            if (arg.equals("--follow")) {
+                return 100;
+            }
+            if (arg.startsWith("--follow=")) {
+                return Long.parseLong(arg.substring("--follow=".length()));
+            }
+        }
+        return 0;
+    }
+
+    // Методы для загрузки данных:
+
     private static List<Product> loadProducts(String filename) throws IOException {
         return loadData(filename, Product::fromCSV); // Читаем данные о продуктах.
     }
@@ -142,17 +294,8 @@ public class Main {
     }
 
     // Универсальный метод для загрузки данных из файла.
-    private static <T> List<T> loadData(String filename, CSVParser<T> parser) throws IOException {
-        List<T> items = new ArrayList<>();
-        List<String> lines = Files.readAllLines(Paths.get(filename)); // Читаем строки файла.
-        for (int i = 1; i < lines.size(); i++) { // Пропускаем заголовок.
-            items.add(parser.parse(lines.get(i))); // Парсим каждую строку.
-        }
-        return items; // Возвращаем список объектов.
-    }
-
-    // Интерфейс для парсинга строк CSV.
-    interface CSVParser<T> {
-        T parse(String line); // Метод для преобразования строки в объект.
+    static <T> List<T> loadData(String filename, CSVParser<T> parser) throws IOException {
+        // Файл отображается в память и разбирается параллельно по фрагментам, заголовок пропускается.
+        return CsvLoader.load(Paths.get(filename), parser);
     }
 }
\ No newline at end of file
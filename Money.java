@@ -0,0 +1,60 @@
+import java.math.BigDecimal; // Точное преобразование из double.
+import java.math.RoundingMode; // Округление до копеек.
+
+public final class Money { // Денежные суммы в копейках (long): точное и независимое от порядка суммирование.
+    public static final int SCALE = 2; // Число знаков после запятой.
+    private static final long MINOR_PER_UNIT = 100; // Копеек в рубле.
+
+    private Money() {
+    }
+
+    public static long parse(String value) {
+        // Разбор строки вида "999.99" или "-5" в копейки без потери точности.
+        String text = value.trim();
+        int i = 0;
+        boolean negative = false;
+        if (i < text.length() && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long units = 0;
+        int unitDigits = 0;
+        for (; i < text.length() && Character.isDigit(text.charAt(i)); i++, unitDigits++) {
+            units = Math.addExact(Math.multiplyExact(units, 10), text.charAt(i) - '0');
+        }
+        long minor = 0;
+        int minorDigits = 0;
+        if (i < text.length() && text.charAt(i) == '.') {
+            for (i++; i < text.length() && Character.isDigit(text.charAt(i)); i++, minorDigits++) {
+                if (minorDigits == SCALE) {
+                    throw new NumberFormatException("Больше " + SCALE + " знаков после запятой: " + value);
+                }
+                minor = minor * 10 + (text.charAt(i) - '0');
+            }
+        }
+        if (i != text.length() || unitDigits + minorDigits == 0) {
+            throw new NumberFormatException("Некорректная денежная сумма: " + value);
+        }
+        for (; minorDigits < SCALE; minorDigits++) {
+            minor *= 10;
+        }
+        long result = Math.addExact(Math.multiplyExact(units, MINOR_PER_UNIT), minor);
+        return negative ? -result : result;
+    }
+
+    public static long fromDouble(double value) {
+        // Округление до ближайшей копейки по десятичной записи числа (0.285 -> 29 копеек).
+        return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static double toDouble(long minor) {
+        return minor / (double) MINOR_PER_UNIT;
+    }
+
+    public static String format(long minor) {
+        // Строка с рублями и ровно двумя знаками копеек, например "26519.72".
+        long abs = Math.abs(minor);
+        long fraction = abs % MINOR_PER_UNIT;
+        return (minor < 0 ? "-" : "") + abs / MINOR_PER_UNIT + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
@@ -1,12 +1,24 @@
 public class Product {
     private int productId;
     private String productName;
-    private double price;
+    private long priceMinor; // Цена в копейках.
 
     public Product(int productId, String productName, double price) {
+        this(productId, productName, Money.fromDouble(price));
+    }
+
+    private Product(int productId, String productName, long priceMinor) {
+        if (priceMinor < 0) {
+            // Затраты покупателей только растут при новых продажах: на этом построены индекс затрат и эскизы.
+            throw new IllegalArgumentException("Отрицательная цена продукта " + productId + ": " + Money.format(priceMinor));
+        }
         this.productId = productId;
         this.productName = productName;
-        this.price = price;
+        this.priceMinor = priceMinor;
+    }
+
+    public static Product ofMinorUnits(int productId, String productName, long priceMinor) {
+        return new Product(productId, productName, priceMinor);
     }
 
     public int getProductId() {
@@ -18,14 +30,21 @@ public class Product {
     }
 
     public double getPrice() {
-        return price;
+        return Money.toDouble(priceMinor);
+    }
+
+    public long getPriceMinor() {
+        return priceMinor;
     }
 
     public static Product fromCSV(String csvLine) {
-        String[] fields = csvLine.split(",");
-        int productId = Integer.parseInt(fields[0].trim());
-        String productName = fields[1].trim();
-        double price = Double.parseDouble(fields[2].trim());
-        return new Product(productId, productName, price);
+        return fromCSV(CsvRecord.of(csvLine));
+    }
+
+    public static Product fromCSV(CsvRecord record) {
+        int productId = record.nextInt();
+        String productName = record.nextString();
+        long priceMinor = record.nextMoney();
+        return new Product(productId, productName, priceMinor); // Отрицательная цена отклоняется конструктором.
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+import java.util.*; // Коллекции List, ArrayList и др.
+
+public class ProductRanking { // Выбор K лучших или худших продуктов через ограниченную кучу за O(n log K).
+    public enum RankBy { // Показатель, по которому ранжируются продукты.
+        COUNT, // Количество продаж.
+        REVENUE // Выручка.
+    }
+
+    private final SalesAggregates stats; // Кэшированные счетчики и выручка по продуктам.
+    private final CatalogIndex<Product> products; // Справочник продуктов для сравнения по ID.
+    private final RankBy rankBy;
+    private final boolean ascending; // true - сначала наименее популярные.
+
+    private ProductRanking(SalesAggregates stats, CatalogIndex<Product> products, RankBy rankBy, boolean ascending) {
+        this.stats = stats;
+        this.products = products;
+        this.rankBy = rankBy;
+        this.ascending = ascending;
+    }
+
+    public static List<Product> top(SalesAggregates stats, CatalogIndex<Product> products, int k, RankBy rankBy) {
+        // K продуктов с наибольшим показателем; продукты без продаж не учитываются.
+        return new ProductRanking(stats, products, rankBy, false).select(k, false);
+    }
+
+    public static List<Product> bottom(SalesAggregates stats, CatalogIndex<Product> products, int k, RankBy rankBy) {
+        // K продуктов с наименьшим показателем, включая продукты из справочника без единой продажи.
+        return new ProductRanking(stats, products, rankBy, true).select(k, true);
+    }
+
+    private List<Product> select(int k, boolean includeUnsold) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K не может быть отрицательным: " + k);
+        }
+        int n = stats.productCount();
+        int[] heap = new int[Math.min(k, n)]; // Куча порядковых номеров, в корне - худший из отобранных.
+        int size = 0;
+        for (int ordinal = 0; ordinal < n; ordinal++) {
+            if (!includeUnsold && stats.productCount(ordinal) == 0) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = ordinal;
+                siftUp(heap, size++);
+            } else if (size > 0 && compare(ordinal, heap[0]) < 0) {
+                heap[0] = ordinal; // Новый кандидат лучше худшего из отобранных - заменяем корень.
+                siftDown(heap, size);
+            }
+        }
+        // Извлекаем из кучи от худшего к лучшему и заполняем результат с конца.
+        Product[] result = new Product[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = products.byOrdinal(heap[0]);
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return Arrays.asList(result);
+    }
+
+    private int compare(int a, int b) {
+        // Отрицательное значение, если продукт a должен стоять в рейтинге раньше b.
+        int byValue = rankBy == RankBy.COUNT
+                ? Long.compare(stats.productCount(a), stats.productCount(b))
+                : Long.compare(stats.productRevenue(a), stats.productRevenue(b));
+        if (byValue != 0) {
+            return ascending ? byValue : -byValue;
+        }
+        return Integer.compare(products.idAt(a), products.idAt(b)); // Детерминированный порядок при равенстве.
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(heap[index], heap[parent]) <= 0) {
+                break;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && compare(heap[left], heap[worst]) > 0) {
+                worst = left;
+            }
+            if (right < size && compare(heap[right], heap[worst]) > 0) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+}
@@ -0,0 +1,112 @@
+public class QuantileSketch { // Квантили неотрицательных величин с относительной ошибкой (логарифмические интервалы, как в DDSketch).
+    private final double accuracy; // Относительная ошибка значения квантиля.
+    private final double gamma; // Отношение границ соседних интервалов: (1 + accuracy) / (1 - accuracy).
+    private final double logGamma;
+    private final int maxBins; // Ограничение памяти: лишние младшие интервалы сливаются в один.
+    private long[] bins = new long[0]; // Счетчики интервалов offset .. offset + bins.length - 1.
+    private int offset; // Номер интервала bins[0].
+    private long zeroCount; // Нулевые значения.
+    private long count; // Всего значений.
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public QuantileSketch(double accuracy, int maxBins) {
+        if (!(accuracy > 0 && accuracy < 1) || maxBins < 1) {
+            throw new IllegalArgumentException("Некорректные параметры эскиза квантилей: точность " + accuracy
+                    + ", интервалов " + maxBins);
+        }
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = maxBins;
+    }
+
+    public void add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Отрицательное значение в эскизе квантилей: " + value);
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value == 0) {
+            zeroCount++;
+            return;
+        }
+        // Интервал i содержит значения (gamma^(i-1), gamma^i].
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        if (bins.length == 0) {
+            offset = index;
+            bins = new long[1];
+        } else if (index < offset || index >= offset + bins.length) {
+            reshape(Math.min(index, offset), Math.max(index, offset + bins.length - 1));
+        }
+        bins[Math.max(index, offset) - offset]++; // Значение ниже окна попадает в слитый младший интервал.
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long quantile(double q) {
+        // Значение квантиля q в пределах accuracy от истинного (кроме слитых младших интервалов); 0, если значений нет.
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Квантиль должен быть от 0 до 1: " + q);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.floor(q * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen > rank) {
+                // Середина интервала в смысле относительной ошибки.
+                long value = Math.round(2 * Math.pow(gamma, offset + i) / (gamma + 1));
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        // Слияние эскизов с одинаковой точностью: счетчики интервалов складываются.
+        if (accuracy != other.accuracy || maxBins != other.maxBins) {
+            throw new IllegalArgumentException("Эскизы квантилей с разными параметрами");
+        }
+        if (other.bins.length > 0) {
+            if (bins.length == 0) {
+                offset = other.offset;
+                bins = new long[other.bins.length];
+            } else {
+                reshape(Math.min(offset, other.offset),
+                        Math.max(offset + bins.length, other.offset + other.bins.length) - 1);
+            }
+            for (int i = 0; i < other.bins.length; i++) {
+                bins[Math.max(other.offset + i, offset) - offset] += other.bins[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long memoryBytes() {
+        return (long) bins.length * Long.BYTES;
+    }
+
+    private void reshape(int from, int to) {
+        // Новое окно [from, to]; если оно шире maxBins, младшие интервалы сливаются в нижний интервал окна.
+        int newOffset = Math.max(from, to - maxBins + 1);
+        long[] resized = new long[to - newOffset + 1];
+        for (int i = 0; i < bins.length; i++) {
+            resized[Math.max(offset + i, newOffset) - newOffset] += bins[i];
+        }
+        bins = resized;
+        offset = newOffset;
+    }
+}
@@ -1,14 +1,50 @@
 import java.io.IOException; // Импорт исключения для обработки ошибок ввода/вывода.
+import java.nio.charset.StandardCharsets; // Отчеты всегда в UTF-8.
 import java.nio.file.*; // Импорт классов для работы с файлами и путями.
 import java.util.List; // Импорт интерфейса List для работы со списками.
 import java.util.Map; // Импорт интерфейса Map для работы с картами (ключ-значение).
 
 public class ReportGenerator { // Определение публичного класса для генерации отчетов.
+    // Колонки отчетов: ключ для CSV/JSON Lines и подпись для текстового формата.
+    private static final ReportSink.Column[] PRODUCT_COLUMNS = {
+            new ReportSink.Column("id", "ID"),
+            new ReportSink.Column("name", "Название"),
+            ReportSink.Column.money("price", "Цена"),
+            new ReportSink.Column("sales_count", "Количество продаж")};
+    private static final ReportSink.Column[] CUSTOMER_COLUMNS = {
+            new ReportSink.Column("id", null), // ID покупателя только в CSV и JSON Lines.
+            new ReportSink.Column("name", "Покупатель"),
+            new ReportSink.Column("purchase_count", "Количество покупок"),
+            ReportSink.Column.money("total_spent", "Общая сумма потраченных средств", " руб.")};
+    private static final ReportSink.Column[] TOTAL_COLUMNS = {
+            ReportSink.Column.money("total_amount", "Общая сумма продаж")};
+    private static final ReportSink.Column[] TRENDS_COLUMNS = {
+            new ReportSink.Column("month", "Месяц"),
+            ReportSink.Column.money("amount", "Сумма продаж")};
+
+    private static final ReportSink.Column[] PRODUCT_CUSTOMERS_COLUMNS = {
+            new ReportSink.Column("product_id", null),
+            new ReportSink.Column("product", "Товар"),
+            new ReportSink.Column("customers", "Покупателей (оценка)")};
+    private static final ReportSink.Column[] MONTH_CUSTOMERS_COLUMNS = {
+            new ReportSink.Column("month", "Месяц"),
+            new ReportSink.Column("customers", "Покупателей (оценка)")};
+    private static final ReportSink.Column[] QUANTILE_COLUMNS = {
+            new ReportSink.Column("quantile", "Квантиль"),
+            ReportSink.Column.money("amount", "Сумма покупки", " руб.")};
+    private static final double[] PURCHASE_QUANTILES = {0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+
+    private static final ReportSink.Column[] CO_PURCHASE_COLUMNS = {
+            new ReportSink.Column("product_id", null), // ID только в CSV и JSON Lines.
+            new ReportSink.Column("product", "Товар"),
+            new ReportSink.Column("related_id", null),
+            new ReportSink.Column("related", "С ним покупают"),
+            new ReportSink.Column("customers", "Общих покупателей")};
 
     public void generateReport(String filename, String content) { 
         // Метод для записи содержимого отчета в файл.
         try {
-            Files.write(Paths.get(filename), content.getBytes()); 
+            writeReport(Paths.get(filename), content); 
             // Запись данных в файл. Если файл не существует, он будет создан.
         } catch (IOException e) { 
             // Обработка исключений ввода/вывода.
@@ -17,68 +53,137 @@ public class ReportGenerator { // Определение публичного к
         }
     }
 
+    public void writeReport(Path path, String content) throws IOException {
+        // Запись отчета с передачей ошибки вызывающему; кодировка всегда UTF-8, а не кодировка платформы.
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.REPORT, String.valueOf(path.getFileName()))) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            Files.write(path, bytes);
+            timer.bytes(bytes.length);
+        }
+    }
+
     public String PopularProductsReport(List<Product> products, Map<Integer, Long> productSalesCount) {
         // Метод для создания отчета о самых популярных продуктах.
-        StringBuilder report = new StringBuilder("Пять самых популярных товаров:\n"); 
-        // Создание строки-отчета с заголовком.
-        for (Product product : products) { 
-            // Проход по списку популярных продуктов.
-            long salesCount = productSalesCount.getOrDefault(product.getProductId(), 0L); 
-            // Получение количества продаж для каждого продукта. Если данных нет, используется 0.
-            report.append("ID: ").append(product.getProductId()) 
-                  // Добавление ID продукта.
-                  .append(", Название: ").append(product.getProductName()) 
-                  // Добавление названия продукта.
-                  .append(", Цена: ").append(product.getPrice()) 
-                  // Добавление цены продукта.
-                  .append(", Количество продаж: ").append(salesCount).append("\n"); 
-                  // Добавление количества продаж.
-        }
-        return report.toString(); 
+        return ReportSink.toText(sink -> PopularProductsReport(products, productSalesCount, sink)); 
         // Возврат отчета в виде строки.
     }
 
+    public void PopularProductsReport(List<Product> products, Map<Integer, Long> productSalesCount, ReportSink sink) throws IOException {
+        // Отчет о самых популярных продуктах, строки пишутся в приемник по мере формирования.
+        sink.title("Пять самых популярных товаров:"); 
+        // Заголовок отчета (только в текстовом формате).
+        productRows(products, productSalesCount, sink);
+    }
+
     public String UnpopularProductsReport(List<Product> products, Map<Integer, Long> productSalesCount) {
         // Метод для создания отчета о наименее популярных продуктах.
-        StringBuilder report = new StringBuilder("Пять самых непопулярных товаров:\n");
+        return ReportSink.toText(sink -> UnpopularProductsReport(products, productSalesCount, sink));
+    }
+
+    public void UnpopularProductsReport(List<Product> products, Map<Integer, Long> productSalesCount, ReportSink sink) throws IOException {
+        sink.title("Пять самых непопулярных товаров:");
+        productRows(products, productSalesCount, sink); // Аналогично методу PopularProductsReport.
+    }
+
+    private void productRows(List<Product> products, Map<Integer, Long> productSalesCount, ReportSink sink) throws IOException {
+        sink.columns(PRODUCT_COLUMNS);
         for (Product product : products) {
+            // Проход по списку продуктов.
             long salesCount = productSalesCount.getOrDefault(product.getProductId(), 0L);
-            // Аналогично методу PopularProductsReport.
-            report.append("ID: ").append(product.getProductId())
-                  .append(", Название: ").append(product.getProductName())
-                  .append(", Цена: ").append(product.getPrice())
-                  .append(", Количество продаж: ").append(salesCount).append("\n");
+            // Получение количества продаж для каждого продукта. Если данных нет, используется 0.
+            sink.row(product.getProductId(), product.getProductName(), product.getPriceMinor(), salesCount); 
+            // ID, название, цена и количество продаж.
         }
-        return report.toString();
     }
 
     public String CustomersReport(List<Customer> topCustomers, Map<Integer, Long> customerPurchaseCount, Map<Integer, Double> customerSpending) {
         // Метод для создания отчета о покупателях.
-        StringBuilder report = new StringBuilder("Отчет о покупателях:\n");
+        return ReportSink.toText(sink -> CustomersReport(topCustomers, customerPurchaseCount, customerSpending, sink)); 
+        // Возврат отчета в виде строки.
+    }
         
+    public void CustomersReport(List<Customer> topCustomers, Map<Integer, Long> customerPurchaseCount,
+                                Map<Integer, Double> customerSpending, ReportSink sink) throws IOException {
+        sink.title("Отчет о покупателях:");
+        sink.columns(CUSTOMER_COLUMNS);
         for (Customer customer : topCustomers) { 
             // Проход по списку лучших клиентов.
             long purchaseCount = customerPurchaseCount.getOrDefault(customer.getCustomerId(), 0L); 
             // Получение количества покупок для клиента.
             double totalSpent = customerSpending.getOrDefault(customer.getCustomerId(), 0.0); 
             // Получение общей суммы затрат клиента.
-            report.append("Покупатель: ").append(customer.getCustomerName()) 
-                  // Добавление имени покупателя.
-                  .append(", Количество покупок: ").append(purchaseCount) 
-                  // Добавление количества покупок.
-                  .append(", Общая сумма потраченных средств: ").append(totalSpent) 
-                  // Добавление общей суммы затрат.
-                  .append(" руб.\n"); 
-                  // Добавление валюты и новой строки.
+            sink.row(customer.getCustomerId(), customer.getCustomerName(), purchaseCount, Money.fromDouble(totalSpent)); 
         }
+    }
 
-        return report.toString(); 
-        // Возврат отчета в виде строки.
+    public void CustomersReport(Sales analyzer, double threshold, ReportSink sink) throws IOException {
+        // Отчет о покупателях с затратами от порога без промежуточных карт и полного списка:
+        // строки пишутся прямо при обходе индекса затрат, весь отчет - под одной блокировкой чтения.
+        sink.title("Отчет о покупателях:");
+        sink.columns(CUSTOMER_COLUMNS);
+        analyzer.forEachTopCustomer(Money.fromDouble(threshold), (customer, purchaseCount, spentMinor) ->
+                sink.row(customer.getCustomerId(), customer.getCustomerName(), purchaseCount, spentMinor));
     }
 
     public String TotalSalesReport(double totalAmount) {
         // Метод для создания отчета о суммарных продажах.
-        return "Общая сумма продаж: " + totalAmount; 
+        return ReportSink.toText(sink -> TotalSalesReport(Money.fromDouble(totalAmount), sink)); 
         // Возврат строки с информацией о сумме продаж.
     }
+
+    public void TotalSalesReport(long totalMinor, ReportSink sink) throws IOException {
+        sink.columns(TOTAL_COLUMNS);
+        sink.row(totalMinor); // Строка "Общая сумма продаж: ..." в текстовом формате.
+    }
+
+    public void CoPurchaseReport(Sales analyzer, int k, ReportSink sink) throws IOException {
+        // Отчет "с этим товаром покупают": до k соседей для каждого продукта справочника, у которого они есть.
+        sink.title("С этими товарами покупают:");
+        sink.columns(CO_PURCHASE_COLUMNS);
+        for (Product product : analyzer.getProducts()) {
+            for (CoPurchaseIndex.Related related : analyzer.getBoughtTogether(product.getProductId(), k)) {
+                sink.row(product.getProductId(), product.getProductName(), related.getProduct().getProductId(),
+                        related.getProduct().getProductName(), related.getCustomers());
+            }
+        }
+    }
+
+    public void ProductCustomersReport(Sales analyzer, ReportSink sink) throws IOException {
+        // Оценка числа различных покупателей каждого проданного продукта справочника (HyperLogLog).
+        sink.title("Покупателей по товарам (оценка):");
+        sink.columns(PRODUCT_CUSTOMERS_COLUMNS);
+        for (Product product : analyzer.getProducts()) {
+            long customers = analyzer.getDistinctCustomers(product.getProductId());
+            if (customers > 0) {
+                sink.row(product.getProductId(), product.getProductName(), customers);
+            }
+        }
+    }
+
+    public void MonthCustomersReport(Map<String, Long> customersByMonth, ReportSink sink) throws IOException {
+        // Оценка числа различных покупателей по месяцам в хронологическом порядке.
+        sink.title("Покупателей по месяцам (оценка):");
+        sink.columns(MONTH_CUSTOMERS_COLUMNS);
+        for (Map.Entry<String, Long> entry : customersByMonth.entrySet()) {
+            sink.row(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void PurchaseQuantilesReport(Sales analyzer, ReportSink sink) throws IOException {
+        // Квантили суммы одной покупки по эскизу: значение в пределах заданной относительной ошибки.
+        sink.title("Распределение суммы покупки (оценка):");
+        sink.columns(QUANTILE_COLUMNS);
+        for (double q : PURCHASE_QUANTILES) {
+            sink.row(q, analyzer.getPurchaseAmountQuantile(q));
+        }
+    }
+
+    public void SalesTrendsReport(Map<String, Long> monthlyTrends, ReportSink sink) throws IOException {
+        // Отчет о тенденциях продаж по месяцам в хронологическом порядке.
+        sink.title("Тенденции продаж");
+        sink.columns("        ", TRENDS_COLUMNS); // В тексте колонки разделены пробелами, как в прежнем отчете.
+        for (Map.Entry<String, Long> entry : monthlyTrends.entrySet()) {
+            sink.row(entry.getKey(), entry.getValue());
+        }
+    }
 }
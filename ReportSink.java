@@ -0,0 +1,332 @@
+import java.io.*; // Writer, StringWriter, Closeable и ошибки ввода-вывода.
+import java.nio.ByteBuffer; // Буфер закодированных байт.
+import java.nio.CharBuffer; // Буфер символов перед кодированием.
+import java.nio.channels.FileChannel; // Канал записи файла отчета.
+import java.nio.charset.*; // Явный кодировщик UTF-8.
+import java.nio.file.*; // Пути и параметры открытия файла.
+
+public class ReportSink implements Closeable { // Потоковая запись отчета построчно: текст, CSV или JSON Lines.
+    public enum Format { // Формат файла отчета.
+        TEXT("txt"), CSV("csv"), JSONL("jsonl");
+
+        private final String extension; // Расширение файла отчета.
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format byKey(String key) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(key)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный формат отчета: " + key);
+        }
+    }
+
+    public static class Column { // Колонка строк отчета.
+        private final String key; // Имя в заголовке CSV и ключ JSON.
+        private final String label; // Подпись в текстовом отчете, null - колонка в тексте не выводится.
+        private final String suffix; // Текст после значения в текстовом отчете, например " руб.".
+        private final boolean money; // Значение - сумма в копейках, выводится через Money.format.
+
+        public Column(String key, String label) {
+            this(key, label, "");
+        }
+
+        public Column(String key, String label, String suffix) {
+            this(key, label, suffix, false);
+        }
+
+        private Column(String key, String label, String suffix, boolean money) {
+            this.key = key;
+            this.label = label;
+            this.suffix = suffix;
+            this.money = money;
+        }
+
+        public static Column money(String key, String label) {
+            return money(key, label, "");
+        }
+
+        public static Column money(String key, String label, String suffix) {
+            // Колонка денежной суммы: значение передается в копейках (long) и пишется как "12345678.90",
+            // без экспоненты double; в JSON - числом.
+            return new Column(key, label, suffix, true);
+        }
+    }
+
+    public interface Content { // Отчет, записываемый в приемник.
+        void writeTo(ReportSink sink) throws IOException;
+    }
+
+    private final Writer file; // Основной приемник символов, закрывается вместе с отчетом.
+    private Writer out; // Текущий приемник: основной или основной вместе с копией на консоль.
+    private final Format format;
+    private Column[] columns = new Column[0]; // Колонки текущей таблицы.
+    private String separator = ", "; // Разделитель колонок в текстовом отчете.
+
+    private ReportSink(Writer out, Format format) {
+        this.file = out;
+        this.out = out;
+        this.format = format;
+    }
+
+    public static ReportSink open(Path path, Format format) throws IOException {
+        // Файл перезаписывается; строки кодируются в UTF-8 независимо от кодировки платформы.
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new ReportSink(new ChannelWriter(channel), format);
+    }
+
+    public static ReportSink text(Writer out) {
+        // Текстовый отчет в произвольный Writer, например StringWriter для вывода на консоль.
+        return new ReportSink(out, Format.TEXT);
+    }
+
+    public static String toText(Content content) {
+        // Текстовый отчет целиком в строку - для вывода на консоль и небольших отчетов.
+        StringWriter out = new StringWriter();
+        try {
+            content.writeTo(text(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter не бросает IOException.
+        }
+        return out.toString();
+    }
+
+    public void echoTo(Writer echo) {
+        // Дальнейшие строки отчета дублируются в echo (например, на консоль); echo не закрывается вместе с отчетом.
+        out = new TeeWriter(file, echo);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void title(String line) throws IOException {
+        // Заголовки есть только в текстовом отчете; в CSV и JSON Lines - только данные.
+        if (format == Format.TEXT) {
+            out.write(line);
+            out.write('\n');
+        }
+    }
+
+    public void columns(Column... columns) throws IOException {
+        columns(", ", columns);
+    }
+
+    public void columns(String separator, Column... columns) throws IOException {
+        // Начало таблицы: для CSV сразу пишется строка заголовка.
+        this.columns = columns;
+        this.separator = separator;
+        if (format == Format.CSV) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeCsv(columns[i].key);
+            }
+            out.write('\n');
+        }
+    }
+
+    public void row(Object... values) throws IOException {
+        // Строка таблицы; значения идут в порядке колонок, числа в JSON пишутся без кавычек.
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Ожидалось значений: " + columns.length + ", получено: " + values.length);
+        }
+        switch (format) {
+            case TEXT:
+                boolean first = true;
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i].label == null) {
+                        continue;
+                    }
+                    out.write(first ? "" : separator);
+                    out.write(columns[i].label);
+                    out.write(": ");
+                    out.write(text(i, values[i]));
+                    out.write(columns[i].suffix);
+                    first = false;
+                }
+                break;
+            case CSV:
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeCsv(text(i, values[i]));
+                }
+                break;
+            default:
+                out.write('{');
+                for (int i = 0; i < values.length; i++) {
+                    out.write(i > 0 ? ",\"" : "\"");
+                    out.write(columns[i].key);
+                    out.write("\":");
+                    if (columns[i].money || values[i] instanceof Number) {
+                        out.write(text(i, values[i]));
+                    } else {
+                        Json.writeString(out, String.valueOf(values[i]));
+                    }
+                }
+                out.write('}');
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush(); // Копия на консоль выводится полностью до закрытия файла.
+        } finally {
+            file.close();
+        }
+    }
+
+    private String text(int column, Object value) {
+        return columns[column].money ? Money.format(((Number) value).longValue()) : String.valueOf(value);
+    }
+
+    private void writeCsv(String value) throws IOException {
+        // Поле в кавычках, только если содержит разделитель, кавычку или перевод строки.
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static class TeeWriter extends Writer { // Запись одновременно в два приемника.
+        private final Writer first;
+        private final Writer second;
+
+        TeeWriter(Writer first, Writer second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            first.write(buffer, offset, length);
+            second.write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            first.write(text, offset, length);
+            second.write(text, offset, length);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            first.write(c);
+            second.write(c);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            second.flush(); // Основной приемник сбрасывается при закрытии.
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static class ChannelWriter extends Writer { // Буферизованная запись символов в канал через кодировщик UTF-8.
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            while (length > 0) {
+                int count = Math.min(chars.remaining(), length);
+                chars.put(buffer, offset, count);
+                offset += count;
+                length -= count;
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            // Строка копируется в буфер символов без промежуточного массива.
+            while (length > 0) {
+                int count = Math.min(chars.remaining(), length);
+                chars.put(text, offset, offset + count);
+                offset += count;
+                length -= count;
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            chars.put((char) c);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encode(false);
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                encode(true);
+                while (encoder.flush(bytes).isOverflow()) {
+                    drain();
+                }
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            // Незавершенная суррогатная пара остается в буфере до следующей порции символов.
+            chars.flip();
+            while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+                drain();
+            }
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
@@ -1,5 +1,4 @@
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 public class Sale {
     private int saleId;
@@ -31,11 +30,14 @@ public class Sale {
     }
 
     public static Sale fromCSV(String csvLine) {
-        String[] fields = csvLine.split(",");
-        int saleId = Integer.parseInt(fields[0].trim());
-        LocalDateTime saleDateTime = LocalDateTime.parse(fields[1].trim(), DateTimeFormatter.ISO_DATE_TIME);
-        int customerId = Integer.parseInt(fields[2].trim());
-        int productId = Integer.parseInt(fields[3].trim());
+        return fromCSV(CsvRecord.of(csvLine));
+    }
+
+    public static Sale fromCSV(CsvRecord record) {
+        int saleId = record.nextInt();
+        LocalDateTime saleDateTime = record.nextDateTime();
+        int customerId = record.nextInt();
+        int productId = record.nextInt();
         return new Sale(saleId, saleDateTime, customerId, productId);
     }
 }
\ No newline at end of file
@@ -1,141 +1,671 @@
+import java.io.IOException; // Ошибки чтения sales.csv и записи строк отчета.
+import java.io.UncheckedIOException; // Ошибки чтения партиций внутри запросов.
+import java.nio.file.Path; // Файл продаж для приближенного режима.
 import java.util.*; // Импорт всех классов из пакета java.util, таких как List, Map, HashMap, и других коллекций.
+import java.util.concurrent.locks.ReentrantReadWriteLock; // Блокировка чтения/записи для режима слежения.
+import java.util.function.Supplier; // Запрос, выполняемый под блокировкой чтения.
 import java.util.logging.Logger; // Импорт класса Logger для логирования.
-import java.util.stream.Collectors; // Импорт утилит для работы с потоками (stream API) и преобразования данных.
+import java.time.LocalDateTime; // Границы интервалов для тенденций продаж.
+import java.time.YearMonth; // Месяцы в оценках по эскизам.
 import java.time.format.TextStyle; // Импорт TextStyle для форматирования дат.
 
 public class Sales { // Определение публичного класса Sales.
     private static final Logger logger = Logger.getLogger(Sales.class.getName()); 
     // Статический логгер для логирования сообщений, таких как отладка или информация о ходе программы.
+    private static final int DEFAULT_RANKING_SIZE = 5; // Размер рейтинга продуктов по умолчанию.
+    private static final int CO_PURCHASE_SIZE = 10; // Сколько совместно покупаемых продуктов хранится для каждого.
+    private static final Locale RUSSIAN = new Locale("ru", "RU"); // Язык названий месяцев.
 
-    private List<Sale> sales; // Список продаж.
+    private volatile SalesTable sales; // Продажи в колоночном виде; в режиме партиций заменяется в rows().
     private List<Product> products; // Список продуктов.
     private List<Customer> customers; // Список клиентов.
+    private CatalogIndex<Product> productIndex; // Индекс продуктов по ID.
+    private CatalogIndex<Customer> customerIndex; // Индекс клиентов по ID.
+    private volatile SalesAggregates aggregates; // Кэш результатов агрегации.
+    private volatile TimeIndex timeIndex; // Индекс продаж по времени.
+    private volatile CustomerSpendIndex spendIndex; // Покупатели по убыванию затрат.
+    private volatile CoPurchaseIndex coPurchaseIndex; // Совместные покупки продуктов.
+    private volatile SalesSketches sketches; // Эскизы приближенного режима.
+    private volatile SalesSketches.Config sketchConfig; // Параметры приближенного режима, null - точные рейтинги.
+    private boolean sketchOnly; // Продажи не хранятся: все ответы только по эскизам (см. approximate).
+    private SalesPartitions partitions; // Каталог партиций по месяцам (см. partitioned), null - продажи в sales.
+    private boolean rowsLoaded = true; // Строки всех партиций уже в sales; false, пока их не запросили.
+    private volatile int parallelism = 1; // Число потоков агрегации, 1 - последовательный режим.
+    private volatile long version; // Версия набора данных, растет при каждом добавлении продаж.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Защита от чтения во время добавления продаж.
 
     public Sales(List<Sale> sales, List<Product> products, List<Customer> customers) {
-        this.sales = sales; // Инициализация списка продаж.
+        this(SalesTable.fromSales(sales, false), products, customers);
+        // Список объектов переносится в колонки, дальше вся работа идет по ним.
+    }
+
+    public Sales(SalesTable sales, List<Product> products, List<Customer> customers) {
+        this.sales = sales; // Инициализация таблицы продаж.
         this.products = products; // Инициализация списка продуктов.
         this.customers = customers; // Инициализация списка клиентов.
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.INDEX, "catalog")) {
+            this.productIndex = new CatalogIndex<>(products, Product::getProductId, "Продукт");
+            this.customerIndex = new CatalogIndex<>(customers, Customer::getCustomerId, "Покупатель");
+            // Индексы строятся один раз, дальше все поиски по ID выполняются за O(1).
+            validateReferences(sales);
+            timer.rows(sales.size());
+        }
+    }
+
+    Sales(SalesTable sales, List<Product> products, List<Customer> customers, SalesAggregates aggregates) {
+        // Восстановление из снимка: ссылки проверялись при его создании, агрегаты уже посчитаны.
+        this.sales = sales;
+        this.products = products;
+        this.customers = customers;
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.INDEX, "catalog")) {
+            this.productIndex = new CatalogIndex<>(products, Product::getProductId, "Продукт");
+            this.customerIndex = new CatalogIndex<>(customers, Customer::getCustomerId, "Покупатель");
+            timer.rows(products.size() + customers.size());
+        }
+        this.aggregates = aggregates;
+    }
+
+    public static Sales approximate(Path salesFile, long limit, List<Product> products, List<Customer> customers,
+                                    SalesSketches.Config config, int parallelism) throws IOException {
+        // Приближенный режим с ограниченной памятью: эскизы строятся потоково прямо из первых limit байт sales.csv,
+        // таблица продаж и точные агрегаты не создаются. Запросы, которым нужны точные данные по каждой
+        // продаже (антирейтинг, покупатели, тенденции по интервалам), бросают UnsupportedOperationException.
+        Sales analyzer = new Sales(new SalesTable(false), products, customers);
+        analyzer.sketchOnly = true;
+        analyzer.sketchConfig = config;
+        analyzer.setParallelism(parallelism);
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.AGGREGATE, "sketches")) {
+            analyzer.sketches = SalesSketches.load(salesFile, limit, analyzer.productIndex, analyzer.customerIndex,
+                    config, parallelism);
+            timer.rows(analyzer.sketches.getSalesCount()).bytes(analyzer.sketches.memoryBytes());
+        }
+        return analyzer;
+    }
+
+    public static Sales partitioned(Path directory, List<Product> products, List<Customer> customers) throws IOException {
+        // Продажи из каталога партиций sales-YYYY-MM.csv. Агрегаты всего периода собираются из кэшей партиций,
+        // тенденции читают только партиции, пересекающиеся с запрошенным интервалом, а строки всех партиций
+        // загружаются лишь для запросов по отдельным продажам (индекс по времени, совместные покупки, эскизы).
+        Sales analyzer = new Sales(new SalesTable(false), products, customers);
+        analyzer.partitions = SalesPartitions.open(directory, products, customers);
+        analyzer.rowsLoaded = false;
+        logger.info("Каталог " + directory + ": партиций " + analyzer.partitions.size());
+        return analyzer;
+    }
+
+    private synchronized SalesTable rows() {
+        // Все продажи для запросов по отдельным строкам; в режиме партиций читаются при первом обращении.
+        if (!rowsLoaded) {
+            try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.LOAD, "partitions")) {
+                sales = partitions.load(LocalDateTime.MIN, LocalDateTime.MAX);
+                timer.rows(sales.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rowsLoaded = true;
+        }
+        return sales;
+    }
+
+    private void requireExact(String query) {
+        if (sketchOnly) {
+            throw new UnsupportedOperationException("Недоступно в приближенном режиме (--approx): " + query);
+        }
+    }
+
+    private void validateReferences(SalesTable sales) {
+        // Проверка, что каждая продажа ссылается на существующие продукт и клиента.
+        Set<Integer> missingProducts = new TreeSet<>();
+        Set<Integer> missingCustomers = new TreeSet<>();
+        for (int row = 0; row < sales.size(); row++) {
+            if (!productIndex.contains(sales.productId(row))) {
+                missingProducts.add(sales.productId(row));
+            }
+            if (!customerIndex.contains(sales.customerId(row))) {
+                missingCustomers.add(sales.customerId(row));
+            }
+        }
+        if (!missingProducts.isEmpty() || !missingCustomers.isEmpty()) {
+            throw new IllegalArgumentException("Продажи ссылаются на отсутствующие записи: продукты "
+                    + missingProducts + ", покупатели " + missingCustomers);
+        }
+    }
+
+    boolean hasReferences(int productId, int customerId) {
+        // Продажа с такими ID пройдет проверку ссылок в appendSales.
+        return productIndex.contains(productId) && customerIndex.contains(customerId);
+    }
+
+    public SalesTable getSalesTable() {
+        return sales; // Колонки продаж для кода, работающего с примитивами; в режиме партиций - только загруженные.
+    }
+
+    public long getDatasetRows() {
+        // Число продаж набора данных: в режиме партиций - по манифесту, даже если строки еще не загружены,
+        // в приближенном режиме - прочитанных при построении эскизов.
+        if (partitions != null) {
+            return partitions.getPartitions().stream().mapToLong(SalesPartitions.Partition::getRows).sum();
+        }
+        return sketchOnly ? sketches.getSalesCount() : sales.size();
+    }
+
+    public List<Sale> getSales() {
+        return read("getSales", () -> rows().asList()); // Представление продаж в виде объектов Sale.
+    }
+
+
+    public List<Product> getProducts() {
+        return Collections.unmodifiableList(products); // Справочник продуктов.
+    }
+
+    public List<Customer> getCustomers() {
+        return Collections.unmodifiableList(customers); // Справочник клиентов.
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        // Число потоков ForkJoinPool для агрегации; результат не зависит от выбранного значения.
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public boolean isApproximate() {
+        return sketchConfig != null;
+    }
+
+    public boolean isSketchOnly() {
+        // Набор данных загружен через approximate: доступны только запросы по эскизам.
+        return sketchOnly;
+    }
+
+    public void setSketchConfig(SalesSketches.Config config) {
+        // Приближенный режим: рейтинг самых продаваемых продуктов берется из эскизов, null - точный режим.
+        if (sketchOnly) {
+            throw new UnsupportedOperationException("Эскизы - единственный источник данных, их параметры не меняются");
+        }
+        lock.writeLock().lock();
+        try {
+            sketchConfig = config;
+            sketches = null; // Эскизы с прежними параметрами не сливаются с новыми, строятся заново.
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public SalesSketches getSketches() {
+        // Эскизы строятся одним проходом при первом запросе и пополняются при добавлении продаж.
+        // Без приближенного режима используются параметры по умолчанию.
+        SalesSketches result = sketches;
+        if (result != null) {
+            return result;
+        }
+        return read("getSketches", () -> {
+            synchronized (this) {
+                if (sketches == null) {
+                    SalesSketches.Config config = sketchConfig;
+                    try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.AGGREGATE, "sketches")) {
+                        SalesTable table = rows();
+                        sketches = SalesSketches.compute(table, productIndex,
+                                config == null ? SalesSketches.Config.DEFAULT : config, parallelism);
+                        timer.rows(table.size()).bytes(sketches.memoryBytes());
+                    }
+                }
+                return sketches;
+            }
+        });
+    }
+
+    public long getVersion() {
+        // Результаты запросов с одинаковой версией совпадают: по ней кэшируются ответы HTTP-сервиса.
+        return version;
+    }
+
+    public SalesAggregates getAggregates() {
+        // Агрегаты вычисляются одним проходом при первом запросе и кэшируются на время жизни набора данных.
+        // Новые продажи (appendSales) изменяют возвращенный объект на месте.
+        SalesAggregates result = aggregates;
+        if (result != null) {
+            return result;
+        }
+        requireExact("точные агрегаты");
+        return read("getAggregates", () -> { // Блокировка чтения берется до монитора, иначе возможна взаимная блокировка с appendSales.
+            synchronized (this) {
+                if (aggregates == null && partitions != null) {
+                    try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.AGGREGATE, "partitions")) {
+                        aggregates = partitions.aggregates(); // Кэши закрытых месяцев, строки не читаются.
+                        timer.rows(aggregates.getSalesCount());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                } else if (aggregates == null) {
+                    try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.AGGREGATE, "sales")) {
+                        aggregates = SalesAggregates.compute(sales, productIndex, customerIndex, parallelism);
+                        timer.rows(sales.size());
+                    }
+                }
+                return aggregates;
+            }
+        });
     }
 
     public double getTotalSalesAmount() {
         logger.info("Calculating the total amount of sales..."); 
         // Логирование начала выполнения метода.
-        return sales.stream() // Преобразование списка продаж в поток данных.
-                .mapToDouble(sale -> getProductById(sale.getProductId()).getPrice()) 
-                // Для каждой продажи получение цены продукта и преобразование в поток double.
-                .sum(); // Суммирование всех цен продуктов.
+        return Money.toDouble(getTotalSalesMinor()); // Сумма всех цен проданных продуктов из кэша.
+    }
+
+    public long getSalesCount() {
+        return read("getSalesCount", () -> sketchOnly ? getSketches().getSalesCount() : getAggregates().getSalesCount());
+    }
+
+    public long getTotalSalesMinor() {
+        // Точная сумма продаж в копейках; эскизы тоже хранят ее без ошибки.
+        return read("getTotalSalesMinor", () -> sketchOnly ? getSketches().getTotalRevenue() : getAggregates().getTotalRevenue());
     }
 
     public List<Product> getTopProducts() {
-        Map<Integer, Long> productSalesCount = sales.stream() 
-            // Создание потока из списка продаж.
-            .collect(Collectors.groupingBy(Sale::getProductId, Collectors.counting())); 
-            // Группировка продаж по ID продуктов и подсчет их количества.
-
-        return productSalesCount.entrySet().stream() 
-            // Создание потока из пар ключ-значение (ID продукта и количество продаж).
-            .sorted((entry1, entry2) -> Long.compare(entry2.getValue(), entry1.getValue())) 
-            // Сортировка продуктов по количеству продаж в убывающем порядке.
-            .limit(5) 
-            // Ограничение результатов до 5 самых продаваемых продуктов.
-            .map(entry -> getProductById(entry.getKey())) 
-            // Получение объекта продукта по его ID.
-            .collect(Collectors.toList()); 
-            // Преобразование результатов в список.
+        return getTopProducts(DEFAULT_RANKING_SIZE); // Пять самых продаваемых продуктов.
+    }
+
+    public List<Product> getTopProducts(int k) {
+        return getTopProducts(k, ProductRanking.RankBy.COUNT);
+    }
+
+    public List<Product> getTopProducts(int k, ProductRanking.RankBy rankBy) {
+        // K лучших продуктов по количеству продаж или выручке; при равенстве раньше идет меньший ID.
+        // В приближенном режиме - по оценкам Count-Min среди отслеживаемых кандидатов.
+        if (isApproximate()) {
+            return read("getTopProducts(approx)", () -> {
+                List<Product> result = new ArrayList<>();
+                for (int productId : getSketches().topProducts(k, rankBy)) {
+                    result.add(productIndex.get(productId));
+                }
+                return result;
+            });
+        }
+        return read("getTopProducts", () -> ProductRanking.top(getAggregates(), productIndex, k, rankBy));
     }
 
     public List<Product> getUnpopularProducts() {
-        Map<Integer, Long> productSalesCount = sales.stream()
-                .collect(Collectors.groupingBy(Sale::getProductId, Collectors.counting()));
-        // Аналогично getTopProducts, подсчитывается количество продаж продуктов.
+        return getUnpopularProducts(DEFAULT_RANKING_SIZE); // Пять наименее продаваемых продуктов.
+    }
+
+    public List<Product> getUnpopularProducts(int k) {
+        return getUnpopularProducts(k, ProductRanking.RankBy.COUNT);
+    }
 
-        return productSalesCount.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue()) 
-                // Сортировка продуктов по количеству продаж в возрастающем порядке.
-                .limit(5) 
-                // Ограничение до 5 наименее продаваемых продуктов.
-                .map(entry -> getProductById(entry.getKey())) 
-                // Преобразование ID продукта в объект продукта.
-                .collect(Collectors.toList()); 
-                // Преобразование в список.
+    public List<Product> getUnpopularProducts(int k, ProductRanking.RankBy rankBy) {
+        // K худших продуктов; продукты справочника без продаж тоже участвуют в рейтинге.
+        return read("getUnpopularProducts", () -> ProductRanking.bottom(getAggregates(), productIndex, k, rankBy));
     }
 
     public Map<Integer, Double> getCustomerSpending() {
         Map<Integer, Double> customerSpending = new HashMap<>(); 
-        // Создание карты для хранения суммы затрат каждого клиента.
-        for (Sale sale : sales) { 
-            // Проход по всем продажам.
-            double productPrice = products.stream() 
-                    .filter(p -> p.getProductId() == sale.getProductId()) 
-                    // Поиск продукта по его ID.
-                    .map(Product::getPrice) 
-                    // Получение цены продукта.
-                    .findFirst()
-                    .orElse(0.0); 
-                    // Если продукт не найден, используется цена 0.0.
-            customerSpending.merge(sale.getCustomerId(), productPrice, Double::sum); 
-            // Обновление карты: добавление цены продукта к затратам клиента.
-        }
+        getCustomerSpendingMinor().forEach((id, minor) -> customerSpending.put(id, Money.toDouble(minor)));
         return customerSpending; 
         // Возврат карты с данными о затратах клиентов.
     }
 
+    public Map<Integer, Long> getCustomerSpendingMinor() {
+        return read("getCustomerSpendingMinor", () -> {
+            SalesAggregates stats = getAggregates();
+            Map<Integer, Long> customerSpending = new HashMap<>();
+            for (int i = 0; i < stats.customerCount(); i++) {
+                if (stats.customerCount(i) > 0) { // В карту попадают только клиенты, совершившие покупки.
+                    customerSpending.put(customerIndex.idAt(i), stats.customerSpend(i));
+                }
+            }
+            return customerSpending;
+            // Затраты клиентов в копейках.
+        });
+    }
+
+    public long getCustomerSpendingMinor(int customerId) {
+        // Затраты одного клиента в копейках без построения карты по всем клиентам.
+        return read("getCustomerSpendingMinor(id)", () -> getAggregates().customerSpend(customerIndex.requireOrdinal(customerId)));
+    }
+
+    public long getCustomerPurchaseCount(int customerId) {
+        // Количество покупок одного клиента.
+        return read("getCustomerPurchaseCount(id)", () -> getAggregates().customerCount(customerIndex.requireOrdinal(customerId)));
+    }
+
     public List<Customer> getTopCustomers(double threshold) {
-        Map<Integer, Double> customerSpending = getCustomerSpending(); 
-        // Получение затрат клиентов.
-
-        return customerSpending.entrySet().stream()
-                .filter(entry -> entry.getValue() >= threshold) 
-                // Фильтрация клиентов, чьи затраты превышают или равны заданному порогу.
-                .sorted((entry1, entry2) -> Double.compare(entry2.getValue(), entry1.getValue())) 
-                // Сортировка клиентов по убыванию их затрат.
-                .map(entry -> customers.stream()
-                        .filter(c -> c.getCustomerId() == entry.getKey()) 
-                        // Поиск клиента по его ID.
-                        .findFirst()
-                        .orElse(null))
-                .filter(Objects::nonNull) 
-                // Исключение null-значений (если клиент не найден).
-                .collect(Collectors.toList()); 
-                // Преобразование в список.
+        long thresholdMinor = Money.fromDouble(threshold); // Порог переводится в копейки, сравнение точное.
+        return read("getTopCustomers", () -> {
+            CustomerSpendIndex index = getCustomerSpendIndex();
+            // Покупатели уже упорядочены по убыванию затрат (при равенстве по ID),
+            // поэтому достаточно бинарного поиска границы порога и среза.
+            return index.slice(0, index.countAtLeast(thresholdMinor));
+        });
     }
 
-    public Map<String, Double> getMonthlySalesTrends() {
-        Map<String, Double> monthlyTrends = new HashMap<>(); 
-        // Создание карты для хранения месячных трендов продаж.
+    public List<Customer> getTopCustomersBySpend(int offset, int limit) {
+        // Страница рейтинга покупателей по затратам: позиции [offset, offset + limit).
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Некорректная страница: offset=" + offset + ", limit=" + limit);
+        }
+        return read("getTopCustomersBySpend", () -> getCustomerSpendIndex().slice(offset, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit)));
+    }
+
+    public interface CustomerRow { // Строка отчета о покупателе: ID и имя, число покупок и затраты в копейках.
+        void accept(Customer customer, long purchaseCount, long spentMinor) throws IOException;
+    }
+
+    public int forEachTopCustomer(long thresholdMinor, CustomerRow row) throws IOException {
+        return forEachTopCustomer(thresholdMinor, 0, Integer.MAX_VALUE, row);
+    }
+
+    public int forEachTopCustomer(long thresholdMinor, int offset, int limit, CustomerRow row) throws IOException {
+        // Покупатели с затратами от порога по убыванию затрат, позиции [offset, offset + limit), под одной блокировкой чтения:
+        // добавление продаж в режиме слежения не разорвет отчет, а в метрики попадает один запрос.
+        // Возвращает число всех покупателей с затратами от порога.
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Некорректная страница: offset=" + offset + ", limit=" + limit);
+        }
+        SalesMetrics.QueryTimer timer = startQuery("forEachTopCustomer");
+        lock.readLock().lock();
+        try {
+            CustomerSpendIndex index = getCustomerSpendIndex();
+            SalesAggregates stats = getAggregates();
+            int count = index.countAtLeast(thresholdMinor);
+            int end = (int) Math.min(count, (long) offset + limit);
+            for (int i = offset; i < end; i++) {
+                int customer = index.ordinalAt(i);
+                row.accept(customerIndex.byOrdinal(customer), stats.customerCount(customer), stats.customerSpend(customer));
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+            if (timer != null) {
+                timer.close();
+            }
+        }
+    }
 
-        for (Sale sale : sales) { 
-            // Проход по всем продажам.
-            String month = sale.getSaleDateTime().getMonth().getDisplayName(TextStyle.SHORT, new Locale("ru", "RU")); 
-            // Получение названия месяца продажи на русском языке.
-            Product product = getProductById(sale.getProductId()); 
-            // Получение объекта продукта по его ID.
-            monthlyTrends.merge(month, product.getPrice(), Double::sum); 
-            // Обновление карты: добавление цены продукта к продажам месяца.
+    public CustomerSpendIndex getCustomerSpendIndex() {
+        // Индекс затрат строится по кэшированным агрегатам и поддерживается при добавлении продаж.
+        CustomerSpendIndex result = spendIndex;
+        if (result != null) {
+            return result;
         }
+        return read("getCustomerSpendIndex", () -> {
+            SalesAggregates stats = getAggregates();
+            synchronized (this) {
+                if (spendIndex == null) {
+                    try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.INDEX, "spend")) {
+                        spendIndex = CustomerSpendIndex.build(stats, customerIndex);
+                        timer.rows(spendIndex.size());
+                    }
+                }
+                return spendIndex;
+            }
+        });
+    }
+
+    public TimeIndex getTimeIndex() {
+        // Индекс по времени строится при первом запросе и поддерживается при добавлении продаж.
+        TimeIndex result = timeIndex;
+        if (result != null) {
+            return result;
+        }
+        requireExact("индекс продаж по времени");
+        return read("getTimeIndex", () -> {
+            synchronized (this) {
+                if (timeIndex == null) {
+                    try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.INDEX, "time")) {
+                        timeIndex = TimeIndex.build(rows(), productIndex);
+                        timer.rows(timeIndex.size());
+                    }
+                }
+                return timeIndex;
+            }
+        });
+    }
+
+    public CoPurchaseIndex getCoPurchaseIndex() {
+        // Индекс совместных покупок строится при первом запросе; после добавления продаж - заново.
+        CoPurchaseIndex result = coPurchaseIndex;
+        if (result != null) {
+            return result;
+        }
+        requireExact("совместные покупки");
+        return read("getCoPurchaseIndex", () -> {
+            synchronized (this) {
+                if (coPurchaseIndex == null) {
+                    try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.INDEX, "copurchase")) {
+                        SalesTable table = rows();
+                        coPurchaseIndex = CoPurchaseIndex.build(table, productIndex, customerIndex, CO_PURCHASE_SIZE, parallelism);
+                        timer.rows(table.size());
+                    }
+                }
+                return coPurchaseIndex;
+            }
+        });
+    }
+
+    public List<CoPurchaseIndex.Related> getBoughtTogether(int productId, int k) {
+        // До k продуктов (не больше CO_PURCHASE_SIZE), которые чаще всего покупали покупатели productId.
+        return read("getBoughtTogether", () -> getCoPurchaseIndex().related(productId, k));
+    }
+
+    public List<TimeIndex.Bucket> getSalesTrends(TimeIndex.Granularity granularity) {
+        // Тенденции за весь период продаж, от первой до последней продажи.
+        if (sketchOnly) {
+            // Эскизы хранят точные итоги только по месяцам.
+            if (granularity != TimeIndex.Granularity.MONTH) {
+                requireExact("тенденции с шагом " + granularity);
+            }
+            return read("getSalesTrends(approx)", () -> getSketches().monthlyBuckets());
+        }
+        if (partitions != null) {
+            LocalDateTime first = partitions.first();
+            return first == null ? Collections.emptyList()
+                    : getSalesTrends(first, partitions.last().plusSeconds(1), granularity);
+        }
+        return read("getSalesTrends", () -> {
+            TimeIndex index = getTimeIndex();
+            if (index.size() == 0) {
+                return Collections.<TimeIndex.Bucket>emptyList();
+            }
+            return index.buckets(index.first(), index.last().plusSeconds(1), granularity);
+        });
+    }
+
+    public List<TimeIndex.Bucket> getSalesTrends(LocalDateTime from, LocalDateTime to, TimeIndex.Granularity granularity) {
+        // Количество и выручка по интервалам внутри [from, to); каждый интервал считается за O(log n).
+        // В режиме партиций читаются только партиции, пересекающиеся с [from, to).
+        if (partitions != null) {
+            return read("getSalesTrends(partitions)", () -> {
+                try {
+                    return partitions.buckets(from, to, granularity);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return read("getSalesTrends(range)", () -> getTimeIndex().buckets(from, to, granularity));
+    }
 
+    public LocalDateTime getFirstSaleTime() {
+        // Время первой продажи, null - продаж нет; в режиме партиций - по манифесту, без чтения строк.
+        return partitions != null ? partitions.first() : read("getFirstSaleTime", () -> getTimeIndex().first());
+    }
+
+    public LocalDateTime getLastSaleTime() {
+        return partitions != null ? partitions.last() : read("getLastSaleTime", () -> getTimeIndex().last());
+    }
+
+    public Map<String, Double> getMonthlySalesTrends() {
+        Map<String, Double> monthlyTrends = new LinkedHashMap<>();
+        getMonthlySalesTrendsMinor().forEach((month, minor) -> monthlyTrends.put(month, Money.toDouble(minor)));
         return monthlyTrends; 
         // Возврат карты с трендами продаж по месяцам.
     }
 
+    public Map<String, Long> getMonthlySalesTrendsMinor() {
+        // Выручка по месяцам в копейках, ключ - "нояб. 2024".
+        Map<String, Long> monthlyTrends = new LinkedHashMap<>();
+        // Месяцы идут в хронологическом порядке, одинаковые месяцы разных лет не смешиваются.
+        for (TimeIndex.Bucket bucket : getSalesTrends(TimeIndex.Granularity.MONTH)) {
+            monthlyTrends.put(monthLabel(YearMonth.from(bucket.getStart())), bucket.getRevenueMinor());
+        }
+        return monthlyTrends;
+    }
+
+    private static String monthLabel(YearMonth month) {
+        return month.getMonth().getDisplayName(TextStyle.SHORT, RUSSIAN) + " " + month.getYear();
+    }
+
+    public long getDistinctCustomers() {
+        // Оценка числа различных покупателей за весь период по эскизам (HyperLogLog).
+        return read("getDistinctCustomers", () -> getSketches().distinctCustomers());
+    }
+
+    public long getDistinctCustomers(int productId) {
+        // Оценка числа различных покупателей продукта; отсутствующий ID - NoSuchElementException.
+        return read("getDistinctCustomers(id)", () -> getSketches().distinctCustomers(productId));
+    }
+
+    public Map<String, Long> getDistinctCustomersByMonth() {
+        // Оценка числа различных покупателей по месяцам, ключи - как в getMonthlySalesTrends.
+        Map<String, Long> result = new LinkedHashMap<>();
+        read("getDistinctCustomersByMonth", () -> getSketches().distinctCustomersByMonth())
+                .forEach((month, customers) -> result.put(monthLabel(month), customers));
+        return result;
+    }
+
+    public long getPurchaseAmountQuantile(double q) {
+        // Квантиль суммы одной покупки в копейках по эскизу с относительной ошибкой, q = 0.5 - медиана.
+        return read("getPurchaseAmountQuantile", () -> getSketches().purchaseAmountQuantile(q));
+    }
+
     public Map<Integer, Long> getProductSalesCount() {
-        return sales.stream()
-                .collect(Collectors.groupingBy(Sale::getProductId, Collectors.counting())); 
-                // Подсчет количества продаж для каждого продукта.
+        if (isApproximate()) {
+            // Оценки сверху по Count-Min для продуктов справочника с ненулевой оценкой - те же, по которым
+            // getTopProducts строит рейтинг в приближенном режиме, поэтому рейтинг и числа в отчете согласованы.
+            // Антирейтинг при точных данных строится по агрегатам, но показывает те же оценки.
+            return read("getProductSalesCount(approx)", () -> {
+                Map<Integer, Long> productSalesCount = new HashMap<>();
+                for (Product product : products) {
+                    long estimate = getSketches().estimateCount(product.getProductId());
+                    if (estimate > 0) {
+                        productSalesCount.put(product.getProductId(), estimate);
+                    }
+                }
+                return productSalesCount;
+            });
+        }
+        return read("getProductSalesCount", () -> {
+            SalesAggregates stats = getAggregates();
+            Map<Integer, Long> productSalesCount = new HashMap<>();
+            for (int i = 0; i < stats.productCount(); i++) {
+                if (stats.productCount(i) > 0) {
+                    productSalesCount.put(productIndex.idAt(i), stats.productCount(i));
+                    // Количество продаж для каждого продукта.
+                }
+            }
+            return productSalesCount;
+        });
     }
 
     public Map<Integer, Long> getCustomerPurchaseCount() {
-        return sales.stream()
-                .collect(Collectors.groupingBy(Sale::getCustomerId, Collectors.counting())); 
-                // Подсчет количества покупок для каждого клиента.
-    }
-
-    private Product getProductById(int productId) {
-        return products.stream()
-                .filter(p -> p.getProductId() == productId) 
-                // Поиск продукта по его ID.
-                .findFirst()
-                .orElse(null); 
-                // Если продукт не найден, возвращается null.
+        return read("getCustomerPurchaseCount", () -> {
+            SalesAggregates stats = getAggregates();
+            Map<Integer, Long> customerPurchaseCount = new HashMap<>();
+            for (int i = 0; i < stats.customerCount(); i++) {
+                if (stats.customerCount(i) > 0) {
+                    customerPurchaseCount.put(customerIndex.idAt(i), stats.customerCount(i));
+                    // Количество покупок для каждого клиента.
+                }
+            }
+            return customerPurchaseCount;
+        });
+    }
+
+    public void appendSales(SalesTable delta) {
+        // Применение новых продаж как приращения: уже вычисленные агрегаты обновляются
+        // только по новым строкам, без повторного прохода по всей таблице.
+        validateReferences(delta);
+        if (partitions != null) {
+            throw new UnsupportedOperationException("Продажи каталога партиций не пополняются: новые продажи - в файлах месяцев");
+        }
+        lock.writeLock().lock();
+        try {
+            SalesAggregates stats = aggregates;
+            TimeIndex index = timeIndex;
+            CustomerSpendIndex spenders = spendIndex;
+            SalesSketches sketch = sketches;
+            for (int row = 0; row < delta.size(); row++) {
+                int productId = delta.productId(row);
+                int customerId = delta.customerId(row);
+                long epochSecond = delta.epochSecond(row);
+                if (!sketchOnly) { // В приближенном режиме продажи не накапливаются, пополняются только эскизы.
+                    sales.append(delta.saleId(row), epochSecond, customerId, productId);
+                }
+                if (sketch != null) {
+                    sketch.add(productId, customerId, epochSecond);
+                }
+                if (stats != null) {
+                    int customer = customerIndex.requireOrdinal(customerId);
+                    stats.add(productIndex.requireOrdinal(productId), customer);
+                    if (spenders != null) {
+                        spenders.onPurchase(customer); // Индекс затрат опирается на те же агрегаты.
+                    }
+                }
+                if (index != null && !index.append(epochSecond, productIndex.get(productId).getPriceMinor())) {
+                    index = null; // Продажа старше уже проиндексированных: индекс перестроится при следующем запросе.
+                    timeIndex = null;
+                }
+            }
+            if (delta.size() > 0) {
+                coPurchaseIndex = null; // Матрица не пополняется на месте: перестроится при следующем запросе.
+                version++; // Запись только под блокировкой записи, поэтому инкремент не теряется.
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public <T> T view(String name, Supplier<T> query) {
+        // Несколько запросов к Sales как один: все они видят одно и то же состояние данных,
+        // добавление продаж ждет завершения query (блокировка чтения повторно входима).
+        return read(name, query);
+    }
+
+    private <T> T read(String name, Supplier<T> query) {
+        // Запросы выполняются под блокировкой чтения, чтобы не видеть частично примененные приращения.
+        // Латентность (включая ожидание блокировки) попадает в гистограмму запроса name.
+        SalesMetrics.QueryTimer timer = startQuery(name);
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+            if (timer != null) {
+                timer.close();
+            }
+        }
+    }
+
+    private SalesMetrics.QueryTimer startQuery(String name) {
+        // Замеряется только внешний запрос: вложенные (поток уже держит блокировку чтения) входят в его время,
+        // иначе MBean считал бы один вызов несколько раз. null - запрос вложенный.
+        return lock.getReadHoldCount() == 0 ? SalesMetrics.get().startQuery(name) : null;
+    }
+
+    public Product getProductById(int productId) {
+        return productIndex.get(productId);
+        // Поиск продукта по его ID; отсутствующий ID приводит к NoSuchElementException.
+    }
+
+    public Customer getCustomerById(int customerId) {
+        return customerIndex.get(customerId);
+        // Поиск клиента по его ID; отсутствующий ID приводит к NoSuchElementException.
     }
 }
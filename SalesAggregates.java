@@ -0,0 +1,175 @@
+import java.io.IOException; // Ошибки записи снимка.
+import java.nio.ByteBuffer; // Чтение агрегатов из снимка.
+import java.util.*; // Коллекции List и др.
+import java.util.concurrent.ForkJoinPool; // Пул потоков для параллельной агрегации.
+import java.util.concurrent.RecursiveTask; // Рекурсивное деление диапазона строк.
+
+public class SalesAggregates { // Результаты всех агрегаций по продажам, вычисленные за один проход.
+    private static final int MIN_LEAF_SIZE = 1 << 16; // Минимальное число строк в листовом фрагменте.
+
+    private final long[] prices; // Цена продукта в копейках по порядковому номеру.
+    private final long[] productCount; // Количество продаж по продукту.
+    private final long[] productRevenue; // Выручка по продукту в копейках.
+    private final long[] customerCount; // Количество покупок по клиенту.
+    private final long[] customerSpend; // Сумма затрат по клиенту в копейках.
+    private long salesCount; // Общее количество продаж.
+    private long totalRevenue; // Общая выручка в копейках.
+
+    private SalesAggregates(long[] prices, int customers) {
+        this.prices = prices;
+        this.productCount = new long[prices.length];
+        this.productRevenue = new long[prices.length];
+        this.customerCount = new long[customers];
+        this.customerSpend = new long[customers];
+    }
+
+    public static SalesAggregates compute(SalesTable sales, CatalogIndex<Product> products, CatalogIndex<Customer> customers) {
+        return compute(sales, products, customers, 1);
+    }
+
+    public static SalesAggregates compute(SalesTable sales, CatalogIndex<Product> products, CatalogIndex<Customer> customers, int parallelism) {
+        // Один проход по колонкам продаж: все показатели обновляются одновременно.
+        // Суммы считаются в копейках целочисленным сложением, поэтому результат точен
+        // и не зависит ни от порядка строк, ни от числа потоков.
+        long[] prices = new long[products.size()];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = products.byOrdinal(i).getPriceMinor();
+        }
+        if (parallelism <= 1) {
+            // Последовательный режим: один проход в один шард, без слияний.
+            return new AggregateTask(sales, products, customers, prices, 0, sales.size(), sales.size()).compute();
+        }
+        // Шард на поток, а не на фрагмент: листьев столько же, сколько потоков, поэтому память на шарды
+        // и число сложений при слиянии пропорциональны parallelism, а не размеру таблицы.
+        int leafSize = Math.max(MIN_LEAF_SIZE, (int) (((long) sales.size() + parallelism - 1) / parallelism));
+        AggregateTask task = new AggregateTask(sales, products, customers, prices, 0, sales.size(), leafSize);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(task);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class AggregateTask extends RecursiveTask<SalesAggregates> { // Агрегация диапазона строк [from, to).
+        private static final long serialVersionUID = 1L;
+
+        private final SalesTable sales;
+        private final CatalogIndex<Product> products;
+        private final CatalogIndex<Customer> customers;
+        private final long[] prices;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        AggregateTask(SalesTable sales, CatalogIndex<Product> products, CatalogIndex<Customer> customers,
+                      long[] prices, int from, int to, int leafSize) {
+            this.sales = sales;
+            this.products = products;
+            this.customers = customers;
+            this.prices = prices;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected SalesAggregates compute() {
+            if (to - from <= leafSize) {
+                // Лист: собственный шард с примитивными счетчиками, общих изменяемых структур нет.
+                SalesAggregates shard = new SalesAggregates(prices, customers.size());
+                for (int row = from; row < to; row++) {
+                    shard.add(products.requireOrdinal(sales.productId(row)),
+                            customers.requireOrdinal(sales.customerId(row)));
+                }
+                return shard;
+            }
+            int leaves = (int) (((long) to - from + leafSize - 1) / leafSize);
+            int middle = from + (leaves / 2) * leafSize; // Граница кратна размеру листа.
+            AggregateTask left = new AggregateTask(sales, products, customers, prices, from, middle, leafSize);
+            AggregateTask right = new AggregateTask(sales, products, customers, prices, middle, to, leafSize);
+            invokeAll(left, right);
+            return left.join().merge(right.join());
+        }
+    }
+
+    SalesAggregates merge(SalesAggregates other) {
+        // Слияние шардов: правый шард добавляется к левому.
+        for (int i = 0; i < productCount.length; i++) {
+            productCount[i] += other.productCount[i];
+            productRevenue[i] += other.productRevenue[i];
+        }
+        for (int i = 0; i < customerCount.length; i++) {
+            customerCount[i] += other.customerCount[i];
+            customerSpend[i] += other.customerSpend[i];
+        }
+        salesCount += other.salesCount;
+        totalRevenue += other.totalRevenue;
+        return this;
+    }
+
+    void add(int product, int customer) {
+        long price = prices[product];
+        productCount[product]++;
+        productRevenue[product] += price;
+        customerCount[customer]++;
+        customerSpend[customer] += price;
+        salesCount++;
+        totalRevenue += price;
+    }
+
+    public long getSalesCount() {
+        return salesCount;
+    }
+
+    public long getTotalRevenue() {
+        return totalRevenue;
+    }
+
+    public long productCount(int product) {
+        return productCount[product];
+    }
+
+    public long productRevenue(int product) {
+        return productRevenue[product];
+    }
+
+    public long customerCount(int customer) {
+        return customerCount[customer];
+    }
+
+    public long customerSpend(int customer) {
+        return customerSpend[customer];
+    }
+
+    public int productCount() {
+        return productCount.length;
+    }
+
+    public int customerCount() {
+        return customerCount.length;
+    }
+
+    void writeTo(SalesSnapshot.Writer out) throws IOException {
+        // Сохранение агрегатов в снимок; цены не пишутся, они восстанавливаются из справочника продуктов.
+        out.putLong(salesCount);
+        out.putLong(totalRevenue);
+        for (long[] column : List.of(productCount, productRevenue, customerCount, customerSpend)) {
+            for (long value : column) {
+                out.putLong(value);
+            }
+        }
+    }
+
+    static SalesAggregates readFrom(ByteBuffer in, long[] prices, int customers) {
+        // Восстановление агрегатов, записанных writeTo.
+        SalesAggregates result = new SalesAggregates(prices, customers);
+        result.salesCount = in.getLong();
+        result.totalRevenue = in.getLong();
+        for (long[] column : List.of(result.productCount, result.productRevenue, result.customerCount, result.customerSpend)) {
+            in.asLongBuffer().get(column);
+            in.position(in.position() + column.length * Long.BYTES);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.IOException; // Ошибки чтения файла.
+import java.nio.channels.FileChannel; // Позиционное чтение дописанной части файла.
+import java.nio.file.*; // Пути и открытие файлов.
+import java.util.concurrent.*; // Планировщик периодического опроса.
+import java.util.logging.Logger; // Журналирование новых продаж и ошибок.
+
+public class SalesFollower implements AutoCloseable { // Слежение за дописыванием sales.csv и применение новых строк к Sales.
+    private static final Logger logger = Logger.getLogger(SalesFollower.class.getName());
+
+    private final Path path; // Файл продаж.
+    private final Sales sales; // Анализатор, к которому применяются новые продажи.
+    private final long pollMillis; // Период опроса размера файла.
+    private final ScheduledExecutorService scheduler;
+    private long offset; // Позиция в файле, до которой строки уже применены.
+    private boolean truncated; // Файл короче offset; о нем уже предупредили.
+
+    public SalesFollower(Path path, Sales sales, long offset, long pollMillis) {
+        this.path = path;
+        this.sales = sales;
+        this.offset = offset;
+        this.pollMillis = pollMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sales-follower");
+            thread.setDaemon(true); // Поток слежения не мешает завершению программы.
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::pollSafely, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        logger.info("Слежение за " + path + " с позиции " + offset);
+    }
+
+    public synchronized int poll() throws IOException {
+        // Разбирает только байты, дописанные после offset, и применяет их как приращение.
+        // Возвращает количество новых продаж.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                if (!truncated) { // Предупреждение один раз, а не на каждом опросе.
+                    logger.warning("Файл " + path + " стал короче (" + size + " < " + offset + "), новые строки не применяются");
+                    truncated = true;
+                }
+                return 0;
+            }
+            if (truncated) {
+                logger.info("Файл " + path + " снова не короче позиции " + offset + ", слежение продолжается");
+                truncated = false;
+            }
+            long end = CsvLoader.completeLinesEnd(channel, offset, size); // Недописанная строка ждет следующего опроса.
+            if (end == offset) {
+                return 0;
+            }
+            // Строки разбираются и проверяются по одной: некорректная строка пропускается и учитывается один раз,
+            // остальные применяются, а позиция сдвигается за весь диапазон, чтобы та же строка не читалась снова.
+            SalesTable delta;
+            try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.PARSE, path.getFileName() + " (дописанные строки)")) {
+                delta = CsvLoader.parseRange(channel, offset, end, new SalesTable(false), this::appendChecked);
+                timer.rows(delta.size()).bytes(end - offset);
+            }
+            sales.appendSales(delta);
+            offset = end;
+            return delta.size();
+        }
+    }
+
+    private void appendChecked(SalesTable delta, CsvRecord record) {
+        // Формат строки совпадает с SalesTable.appendRecord; строка добавляется, только если разобрана целиком
+        // и ссылается на известные продукт и покупателя.
+        try {
+            int saleId = record.nextInt();
+            long epochSecond = record.nextEpochSecond();
+            int customerId = record.nextInt();
+            int productId = record.nextInt();
+            if (!sales.hasReferences(productId, customerId)) {
+                throw new IllegalArgumentException("продажа " + saleId + " ссылается на отсутствующий продукт "
+                        + productId + " или покупателя " + customerId);
+            }
+            delta.append(saleId, epochSecond, customerId, productId);
+        } catch (IllegalArgumentException e) { // В том числе некорректная дата (см. CsvRecord.nextDateTime).
+            SalesMetrics.get().parseError();
+            logger.warning("Строка " + path + " пропущена: " + e.getMessage());
+        }
+    }
+
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    private void pollSafely() {
+        try {
+            int added = poll();
+            if (added > 0) {
+                logger.info("Добавлено продаж: " + added);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Ошибка чтения новых продаж из " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,330 @@
+import java.lang.management.ManagementFactory; // Платформенный MBean-сервер и сведения о куче.
+import java.util.*; // Коллекции Map, List, EnumMap и др.
+import java.util.concurrent.ConcurrentHashMap; // Гистограммы запросов по имени.
+import java.util.concurrent.atomic.*; // Счетчики без блокировок.
+import java.util.logging.Logger; // Журналирование длительности фаз.
+import javax.management.JMException; // Ошибки регистрации MBean.
+import javax.management.ObjectName; // Имя MBean.
+import jdk.jfr.*; // Пользовательские события JFR.
+
+public final class SalesMetrics implements SalesMetricsMBean { // Замеры фаз и запросов: события JFR и MBean sales:type=SalesMetrics.
+    private static final Logger logger = Logger.getLogger(SalesMetrics.class.getName());
+    private static final String OBJECT_NAME = "sales:type=SalesMetrics";
+    private static final SalesMetrics INSTANCE = new SalesMetrics();
+
+    public enum Phase { // Фазы работы приложения.
+        LOAD, PARSE, INDEX, AGGREGATE, REPORT
+    }
+
+    @Name("sales.Phase")
+    @Label("Фаза обработки продаж")
+    @Category("Sales")
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+        @Label("Фаза")
+        String phase;
+        @Label("Объект")
+        String detail; // Файл, индекс или отчет.
+        @Label("Строк")
+        long rows;
+        @Label("Байт")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("sales.Query")
+    @Label("Запрос к Sales")
+    @Category("Sales")
+    @StackTrace(false)
+    static final class QueryEvent extends Event {
+        @Label("Запрос")
+        String query;
+    }
+
+    @Name("sales.Dataset")
+    @Label("Загруженный набор данных")
+    @Category("Sales")
+    @StackTrace(false)
+    static final class DatasetEvent extends Event {
+        @Label("Продаж")
+        long rows;
+        @Label("Продуктов")
+        long products;
+        @Label("Покупателей")
+        long customers;
+        @Label("Колонки в куче")
+        @DataAmount
+        long columnHeapBytes;
+        @Label("Колонки вне кучи")
+        @DataAmount
+        long columnOffHeapBytes;
+        @Label("Занято кучи после загрузки")
+        @DataAmount
+        long heapUsed;
+    }
+
+    private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+    private final Map<String, LatencyHistogram> queries = new ConcurrentHashMap<>();
+    private final AtomicLong parseErrors = new AtomicLong();
+    private volatile long datasetRows;
+    private volatile long columnHeapBytes;
+    private volatile long columnOffHeapBytes;
+    private volatile long heapUsedAfterLoad;
+
+    private SalesMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            logger.warning("MBean " + OBJECT_NAME + " не зарегистрирован: " + e.getMessage()); // Замеры продолжаются.
+        }
+    }
+
+    public static SalesMetrics get() {
+        return INSTANCE;
+    }
+
+    public Timer start(Phase phase, String detail) {
+        // Замер фазы: try (SalesMetrics.Timer timer = metrics.start(...)) { ...; timer.rows(n); }
+        return new Timer(phase, detail);
+    }
+
+    public QueryTimer startQuery(String query) {
+        // Замер запроса: латентность попадает в гистограмму, событие JFR пишется, только если включено.
+        return new QueryTimer(query);
+    }
+
+    public void parseError() {
+        parseErrors.incrementAndGet();
+    }
+
+    public void datasetLoaded(Sales sales) {
+        // Объем памяти набора данных: колонки продаж точно, плюс занятая куча процесса после загрузки.
+        SalesTable table = sales.getSalesTable();
+        datasetRows = sales.getDatasetRows(); // Для партиций и эскизов строк в таблице может не быть.
+        columnHeapBytes = table.isDirect() ? 0 : table.memoryBytes();
+        columnOffHeapBytes = table.isDirect() ? table.memoryBytes() : 0;
+        heapUsedAfterLoad = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        DatasetEvent event = new DatasetEvent();
+        if (event.shouldCommit()) {
+            event.rows = datasetRows;
+            event.products = sales.getProducts().size();
+            event.customers = sales.getCustomers().size();
+            event.columnHeapBytes = columnHeapBytes;
+            event.columnOffHeapBytes = columnOffHeapBytes;
+            event.heapUsed = heapUsedAfterLoad;
+            event.commit();
+        }
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return phases.get(Phase.PARSE).rows.get();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return phases.get(Phase.PARSE).bytes.get();
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.get();
+    }
+
+    @Override
+    public double getLastParseRowsPerSecond() {
+        return phases.get(Phase.PARSE).lastRowsPerSecond();
+    }
+
+    @Override
+    public long getDatasetRows() {
+        return datasetRows;
+    }
+
+    @Override
+    public long getDatasetColumnHeapBytes() {
+        return columnHeapBytes;
+    }
+
+    @Override
+    public long getDatasetColumnOffHeapBytes() {
+        return columnOffHeapBytes;
+    }
+
+    @Override
+    public long getHeapUsedAfterLoad() {
+        return heapUsedAfterLoad;
+    }
+
+    @Override
+    public String[] getPhaseTimings() {
+        List<String> result = new ArrayList<>();
+        phases.forEach((phase, stats) -> result.add(phase + ": " + stats));
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getQueryLatencies() {
+        return new TreeMap<>(queries).entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    @Override
+    public long[] queryHistogram(String query) {
+        LatencyHistogram histogram = queries.get(query);
+        return histogram == null ? new long[0] : histogram.buckets();
+    }
+
+    @Override
+    public void reset() {
+        phases.values().forEach(PhaseStats::reset);
+        queries.clear();
+        parseErrors.set(0);
+    }
+
+    public final class Timer implements AutoCloseable { // Замер одной фазы.
+        private final Phase phase;
+        private final String detail;
+        private final long start = System.nanoTime();
+        private final PhaseEvent event = new PhaseEvent();
+        private long rows;
+        private long bytes;
+
+        private Timer(Phase phase, String detail) {
+            this.phase = phase;
+            this.detail = detail;
+            event.begin();
+        }
+
+        public Timer rows(long rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        public Timer bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            phases.get(phase).record(nanos, rows, bytes);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.detail = detail;
+                event.rows = rows;
+                event.bytes = bytes;
+                event.commit();
+            }
+            logger.fine(() -> phase + " " + detail + ": " + nanos / 1_000_000 + " мс, строк " + rows + ", байт " + bytes);
+        }
+    }
+
+    public final class QueryTimer implements AutoCloseable { // Замер одного запроса.
+        private final String query;
+        private final long start = System.nanoTime();
+        private final QueryEvent event = new QueryEvent();
+
+        private QueryTimer(String query) {
+            this.query = query;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            queries.computeIfAbsent(query, name -> new LatencyHistogram()).record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.query = query;
+                event.commit();
+            }
+        }
+    }
+
+    private static final class PhaseStats { // Накопленные итоги фазы.
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile long lastNanos;
+        private volatile long lastRows;
+
+        void record(long nanos, long rows, long bytes) {
+            count.incrementAndGet();
+            this.nanos.addAndGet(nanos);
+            this.rows.addAndGet(rows);
+            this.bytes.addAndGet(bytes);
+            lastNanos = nanos;
+            lastRows = rows;
+        }
+
+        double lastRowsPerSecond() {
+            long last = lastNanos;
+            return last == 0 ? 0 : lastRows * 1e9 / last;
+        }
+
+        void reset() {
+            count.set(0);
+            nanos.set(0);
+            rows.set(0);
+            bytes.set(0);
+            lastNanos = 0;
+            lastRows = 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("раз %d, всего %.1f мс, последний %.1f мс, строк %d, байт %d, строк/с (последний) %.0f",
+                    count.get(), nanos.get() / 1e6, lastNanos / 1e6, rows.get(), bytes.get(), lastRowsPerSecond());
+        }
+    }
+
+    private static final class LatencyHistogram { // Гистограмма латентности с интервалами-степенями двойки в микросекундах.
+        private static final int BUCKETS = 40; // Последний интервал - от 2^38 мкс и больше.
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            // Интервал 0 - меньше 1 мкс, интервал i - [2^(i-1), 2^i) мкс.
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            counts.incrementAndGet(bucket);
+            total.incrementAndGet();
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        long[] buckets() {
+            long[] result = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                result[i] = counts.get(i);
+            }
+            return result;
+        }
+
+        private long percentileMicros(double p) {
+            // Верхняя граница интервала, в который попадает перцентиль.
+            long target = (long) Math.ceil(total.get() * p);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= target && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("вызовов %d, p50 <= %d мкс, p99 <= %d мкс, max %.1f мкс",
+                    total.get(), percentileMicros(0.5), percentileMicros(0.99), max.get() / 1e3);
+        }
+    }
+}
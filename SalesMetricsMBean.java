@@ -0,0 +1,25 @@
+public interface SalesMetricsMBean { // Атрибуты и операции MBean sales:type=SalesMetrics (jconsole, VisualVM, jcmd).
+    long getRowsParsed(); // Разобрано строк CSV с начала работы.
+
+    long getBytesRead(); // Прочитано байт CSV.
+
+    long getParseErrors(); // Ошибок разбора CSV.
+
+    double getLastParseRowsPerSecond(); // Скорость последнего разбора, строк в секунду.
+
+    long getDatasetRows(); // Продаж в загруженном наборе.
+
+    long getDatasetColumnHeapBytes(); // Память колонок продаж в куче.
+
+    long getDatasetColumnOffHeapBytes(); // Память колонок продаж вне кучи.
+
+    long getHeapUsedAfterLoad(); // Занятая куча сразу после загрузки набора.
+
+    String[] getPhaseTimings(); // Итоги по фазам: загрузка, разбор, индексы, агрегация, отчеты.
+
+    String[] getQueryLatencies(); // Латентность запросов Sales: число вызовов, p50, p99, максимум.
+
+    long[] queryHistogram(String query); // Гистограмма запроса: интервал i - [2^(i-1), 2^i) мкс.
+
+    void reset(); // Сброс накопленных значений.
+}
@@ -0,0 +1,417 @@
+import java.io.*; // BufferedReader, BufferedWriter и ошибки ввода-вывода.
+import java.nio.ByteBuffer; // Чтение кэша агрегатов.
+import java.nio.channels.FileChannel; // Запись и отображение кэша агрегатов.
+import java.nio.charset.StandardCharsets; // Файлы продаж и манифест в UTF-8.
+import java.nio.file.*; // Каталог партиций, атрибуты и атомарная замена файлов.
+import java.time.*; // Границы диапазона и месяцы партиций.
+import java.util.*; // Коллекции List, Map, TreeMap и др.
+import java.util.logging.Logger; // Журналирование сканирования партиций.
+import java.util.regex.Matcher; // Разбор имени файла партиции.
+import java.util.regex.Pattern;
+
+public class SalesPartitions { // Каталог продаж по месяцам (sales-YYYY-MM.csv) с манифестом и кэшем агрегатов партиций.
+    private static final Logger logger = Logger.getLogger(SalesPartitions.class.getName());
+    private static final Pattern PARTITION_FILE = Pattern.compile("sales-(\\d{4})-(\\d{2})\\.csv");
+    private static final String MANIFEST_FILE = "manifest.csv";
+    private static final String MANIFEST_HEADER = "file,rows,min_epoch_second,max_epoch_second,size,modified_millis";
+    private static final String SALES_HEADER = "saleId,saleDateTime,customerId,productId";
+    private static final int AGGREGATES_MAGIC = 0x53414747; // "SAGG".
+    private static final int AGGREGATES_VERSION = 1;
+
+    public class Partition { // Файл продаж за один месяц и его сведения из манифеста.
+        private final String fileName;
+        private final YearMonth month;
+        private final long size; // Размер и время изменения файла, по которым проверяется актуальность манифеста и кэша.
+        private final long modified;
+        private final int rows;
+        private final long minEpochSecond; // Время первой и последней продажи в файле, Long.MAX_VALUE/MIN_VALUE если пусто.
+        private final long maxEpochSecond;
+        private SalesAggregates aggregates; // Агрегаты всей партиции.
+        private TimeIndex timeIndex; // Индекс по времени для тенденций, строится при первом запросе по интервалам.
+
+        private Partition(String fileName, YearMonth month, long size, long modified, int rows,
+                          long minEpochSecond, long maxEpochSecond) {
+            this.fileName = fileName;
+            this.month = month;
+            this.size = size;
+            this.modified = modified;
+            this.rows = rows;
+            this.minEpochSecond = minEpochSecond;
+            this.maxEpochSecond = maxEpochSecond;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public boolean overlaps(long from, long to) {
+            // Есть ли в партиции продажи из [from, to) по границам из манифеста; файл при этом не читается.
+            return rows > 0 && minEpochSecond < to && maxEpochSecond >= from;
+        }
+
+        public boolean within(long from, long to) {
+            // Все продажи партиции попадают в [from, to).
+            return rows > 0 && minEpochSecond >= from && maxEpochSecond < to;
+        }
+
+        public SalesTable table() throws IOException {
+            // Продажи партиции читаются из файла при каждом вызове и не кэшируются: в памяти остаются только
+            // агрегаты и индекс по времени, а строки держит тот, кому они нужны (Sales при запросах по продажам).
+            return loadTable(directory.resolve(fileName));
+        }
+
+        public synchronized SalesAggregates aggregates() throws IOException {
+            // Агрегаты партиции: из памяти, из файла кэша, если партиция и справочники не менялись, иначе одним проходом.
+            // Закрытые месяцы не меняются, поэтому после первого запуска их продажи для агрегатов больше не читаются.
+            if (aggregates == null) {
+                aggregates = readAggregates(this);
+                if (aggregates == null) {
+                    aggregates = SalesAggregates.compute(table(), products, customers);
+                    writeAggregates(this, aggregates);
+                }
+            }
+            return aggregates;
+        }
+
+        public synchronized TimeIndex timeIndex() throws IOException {
+            if (timeIndex == null) {
+                timeIndex = TimeIndex.build(table(), products);
+            }
+            return timeIndex;
+        }
+    }
+
+    private final Path directory;
+    private final List<Product> productList;
+    private final List<Customer> customerList;
+    private final CatalogIndex<Product> products;
+    private final CatalogIndex<Customer> customers;
+    private final long catalogHash; // Отпечаток справочников: агрегаты зависят от цен и состава покупателей.
+    private final List<Partition> partitions = new ArrayList<>(); // Партиции по возрастанию месяца.
+
+    private SalesPartitions(Path directory, List<Product> products, List<Customer> customers) {
+        this.directory = directory;
+        this.productList = products;
+        this.customerList = customers;
+        this.products = new CatalogIndex<>(products, Product::getProductId, "Продукт");
+        this.customers = new CatalogIndex<>(customers, Customer::getCustomerId, "Покупатель");
+        long hash = 17;
+        for (Product product : products) {
+            hash = (hash * 31 + product.getProductId()) * 31 + product.getPriceMinor();
+        }
+        for (Customer customer : customers) {
+            hash = hash * 31 + customer.getCustomerId();
+        }
+        this.catalogHash = hash;
+    }
+
+    public static SalesPartitions open(Path directory, List<Product> products, List<Customer> customers) throws IOException {
+        // Чтение манифеста; новые и измененные файлы сканируются, и манифест перезаписывается.
+        SalesPartitions result = new SalesPartitions(directory, products, customers);
+        Map<String, String[]> manifest = result.readManifest();
+        boolean changed = false;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "sales-*.csv")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::getFileName));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Matcher matcher = PARTITION_FILE.matcher(name);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            String[] entry = manifest.remove(name);
+            if (entry != null && Long.parseLong(entry[4]) == size && Long.parseLong(entry[5]) == modified) {
+                result.partitions.add(result.new Partition(name, month, size, modified, Integer.parseInt(entry[1]),
+                        Long.parseLong(entry[2]), Long.parseLong(entry[3])));
+                continue;
+            }
+            result.partitions.add(result.scan(name, month, size, modified));
+            changed = true;
+        }
+        if (changed || !manifest.isEmpty()) { // Удаленные файлы тоже уходят из манифеста.
+            result.writeManifest();
+        }
+        return result;
+    }
+
+    public List<Partition> getPartitions() {
+        return Collections.unmodifiableList(partitions);
+    }
+
+    public List<Partition> overlapping(LocalDateTime from, LocalDateTime to) {
+        // Отсечение партиций по манифесту: остаются только те, где есть продажи из [from, to).
+        long start = SalesTable.toEpochSecond(from);
+        long end = SalesTable.toEpochSecond(to);
+        List<Partition> result = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.overlaps(start, end)) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    public SalesTable load(LocalDateTime from, LocalDateTime to) throws IOException {
+        // Продажи из [from, to): читаются только пересекающиеся партиции, крайние фильтруются по времени.
+        long start = SalesTable.toEpochSecond(from);
+        long end = SalesTable.toEpochSecond(to);
+        List<Partition> selected = overlapping(from, to);
+        SalesTable result = new SalesTable(selected.stream().mapToInt(Partition::getRows).sum(), false);
+        for (Partition partition : selected) {
+            appendRange(result, partition, start, end);
+        }
+        return result;
+    }
+
+    public SalesAggregates aggregates(LocalDateTime from, LocalDateTime to) throws IOException {
+        // Агрегаты за [from, to): целиком попавшие партиции берутся из кэша, строки читаются только у крайних.
+        long start = SalesTable.toEpochSecond(from);
+        long end = SalesTable.toEpochSecond(to);
+        SalesTable edges = new SalesTable(false);
+        List<SalesAggregates> whole = new ArrayList<>();
+        for (Partition partition : overlapping(from, to)) {
+            if (partition.within(start, end)) {
+                whole.add(partition.aggregates());
+            } else {
+                appendRange(edges, partition, start, end);
+            }
+        }
+        SalesAggregates result = SalesAggregates.compute(edges, products, customers);
+        for (SalesAggregates cached : whole) {
+            result.merge(cached); // Кэш партиции - правый операнд и не изменяется.
+        }
+        return result;
+    }
+
+    public SalesAggregates aggregates() throws IOException {
+        // Агрегаты всех продаж - слияние кэшей партиций; строки читаются только у партиций без действующего кэша.
+        SalesAggregates result = SalesAggregates.compute(new SalesTable(false), products, customers);
+        for (Partition partition : partitions) {
+            result.merge(partition.aggregates());
+        }
+        return result;
+    }
+
+    public LocalDateTime first() {
+        // Время первой продажи по манифесту, null - продаж нет.
+        long min = Long.MAX_VALUE;
+        for (Partition partition : partitions) {
+            min = Math.min(min, partition.minEpochSecond);
+        }
+        return min == Long.MAX_VALUE ? null : SalesTable.toDateTime(min);
+    }
+
+    public LocalDateTime last() {
+        long max = Long.MIN_VALUE;
+        for (Partition partition : partitions) {
+            max = Math.max(max, partition.maxEpochSecond);
+        }
+        return max == Long.MIN_VALUE ? null : SalesTable.toDateTime(max);
+    }
+
+    public List<TimeIndex.Bucket> buckets(LocalDateTime from, LocalDateTime to, TimeIndex.Granularity granularity)
+            throws IOException {
+        // Тенденции за [from, to), как TimeIndex.buckets: читаются только пересекающиеся партиции. Партиция, которая
+        // целиком лежит в одном интервале (месяц при шаге MONTH или YEAR), дает итоги из кэша агрегатов без чтения строк.
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (LocalDateTime start = granularity.truncate(from); start.isBefore(to); start = granularity.next(start)) {
+            starts.add(start);
+        }
+        long[] startSeconds = starts.stream().mapToLong(SalesTable::toEpochSecond).toArray();
+        long[] counts = new long[starts.size()];
+        long[] revenue = new long[starts.size()];
+        long start = SalesTable.toEpochSecond(from);
+        long end = SalesTable.toEpochSecond(to);
+        for (Partition partition : overlapping(from, to)) {
+            int bucket = bucketOf(startSeconds, partition.minEpochSecond);
+            if (partition.within(start, end) && bucket == bucketOf(startSeconds, partition.maxEpochSecond)) {
+                SalesAggregates stats = partition.aggregates();
+                counts[bucket] += stats.getSalesCount();
+                revenue[bucket] += stats.getTotalRevenue();
+                continue;
+            }
+            List<TimeIndex.Bucket> part = partition.timeIndex().buckets(from, to, granularity);
+            for (int i = 0; i < part.size(); i++) {
+                counts[i] += part.get(i).getCount();
+                revenue[i] += part.get(i).getRevenueMinor();
+            }
+        }
+        List<TimeIndex.Bucket> result = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            result.add(new TimeIndex.Bucket(starts.get(i), granularity.next(starts.get(i)), counts[i], revenue[i]));
+        }
+        return result;
+    }
+
+    private static int bucketOf(long[] startSeconds, long epochSecond) {
+        // Интервал, в который попадает момент времени: последний с началом не позже него.
+        int position = Arrays.binarySearch(startSeconds, epochSecond);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    public int size() {
+        return partitions.size();
+    }
+
+    public static int split(Path salesFile, Path directory) throws IOException {
+        // Раскладка одного sales.csv по файлам месяцев; строки переносятся без изменений. Возвращает число партиций.
+        Files.createDirectories(directory);
+        Map<YearMonth, BufferedWriter> writers = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(salesFile, StandardCharsets.UTF_8)) {
+            String line = in.readLine(); // Заголовок.
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                CsvRecord record = CsvRecord.of(line);
+                record.nextInt();
+                YearMonth month = YearMonth.from(record.nextDateTime());
+                BufferedWriter out = writers.get(month);
+                if (out == null) {
+                    out = Files.newBufferedWriter(directory.resolve(fileName(month)), StandardCharsets.UTF_8);
+                    out.write(SALES_HEADER);
+                    out.write('\n');
+                    writers.put(month, out);
+                }
+                out.write(line);
+                out.write('\n');
+            }
+        } finally {
+            for (BufferedWriter out : writers.values()) {
+                out.close();
+            }
+        }
+        return writers.size();
+    }
+
+    public static String fileName(YearMonth month) {
+        return String.format("sales-%04d-%02d.csv", month.getYear(), month.getMonthValue());
+    }
+
+    private Partition scan(String name, YearMonth month, long size, long modified) throws IOException {
+        // Новая или измененная партиция читается целиком; по тем же строкам сразу считаются и сохраняются
+        // ее агрегаты, а сами строки в памяти не остаются.
+        SalesTable table = loadTable(directory.resolve(name));
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < table.size(); row++) {
+            min = Math.min(min, table.epochSecond(row));
+            max = Math.max(max, table.epochSecond(row));
+        }
+        Partition partition = new Partition(name, month, size, modified, table.size(), min, max);
+        if (table.size() > 0) {
+            partition.aggregates = SalesAggregates.compute(table, products, customers);
+            writeAggregates(partition, partition.aggregates);
+        }
+        logger.info("Партиция " + name + " просканирована, продаж: " + table.size());
+        return partition;
+    }
+
+    private SalesTable loadTable(Path file) throws IOException {
+        SalesTable table = SalesTable.load(file, false);
+        for (int row = 0; row < table.size(); row++) {
+            if (!products.contains(table.productId(row)) || !customers.contains(table.customerId(row))) {
+                throw new IllegalArgumentException(file + ": продажа " + table.saleId(row)
+                        + " ссылается на отсутствующий продукт или покупателя");
+            }
+        }
+        return table;
+    }
+
+    private static void appendRange(SalesTable target, Partition partition, long start, long end) throws IOException {
+        SalesTable table = partition.table();
+        if (partition.within(start, end)) {
+            target.appendAll(table);
+            return;
+        }
+        for (int row = 0; row < table.size(); row++) {
+            long epochSecond = table.epochSecond(row);
+            if (epochSecond >= start && epochSecond < end) {
+                target.append(table.saleId(row), epochSecond, table.customerId(row), table.productId(row));
+            }
+        }
+    }
+
+    private Map<String, String[]> readManifest() throws IOException {
+        Path file = directory.resolve(MANIFEST_FILE);
+        Map<String, String[]> manifest = new HashMap<>();
+        if (!Files.isRegularFile(file)) {
+            return manifest;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",");
+            if (fields.length == 6 && !line.equals(MANIFEST_HEADER)) {
+                manifest.put(fields[0], fields);
+            }
+        }
+        return manifest;
+    }
+
+    private void writeManifest() throws IOException {
+        // Манифест пишется во временный файл и атомарно заменяет прежний.
+        List<String> lines = new ArrayList<>();
+        lines.add(MANIFEST_HEADER);
+        for (Partition partition : partitions) {
+            lines.add(partition.fileName + "," + partition.rows + "," + partition.minEpochSecond + ","
+                    + partition.maxEpochSecond + "," + partition.size + "," + partition.modified);
+        }
+        Path file = directory.resolve(MANIFEST_FILE);
+        Path temp = file.resolveSibling(MANIFEST_FILE + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path aggregatesFile(Partition partition) {
+        return directory.resolve("." + partition.fileName + ".agg");
+    }
+
+    private SalesAggregates readAggregates(Partition partition) {
+        // Кэш действителен, только если совпадают размер и время изменения партиции и отпечаток справочников.
+        Path file = aggregatesFile(partition);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != AGGREGATES_MAGIC || in.getInt() != AGGREGATES_VERSION
+                    || in.getLong() != partition.size || in.getLong() != partition.modified || in.getLong() != catalogHash) {
+                return null;
+            }
+            long[] prices = productList.stream().mapToLong(Product::getPriceMinor).toArray();
+            return SalesAggregates.readFrom(in, prices, customerList.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Кэш агрегатов " + file + " не прочитан (" + e + "), будет пересчитан");
+            return null;
+        }
+    }
+
+    private void writeAggregates(Partition partition, SalesAggregates aggregates) {
+        Path file = aggregatesFile(partition);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                SalesSnapshot.Writer out = new SalesSnapshot.Writer(channel);
+                out.putInt(AGGREGATES_MAGIC);
+                out.putInt(AGGREGATES_VERSION);
+                out.putLong(partition.size);
+                out.putLong(partition.modified);
+                out.putLong(catalogHash);
+                aggregates.writeTo(out);
+                out.flush();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("Кэш агрегатов " + file + " не сохранен: " + e.getMessage()); // Работа продолжается без кэша.
+        }
+    }
+}
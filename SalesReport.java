@@ -0,0 +1,134 @@
+import java.io.IOException; // Ошибки записи отчета.
+import java.io.UncheckedIOException; // Ошибка записи из отчета, построенного внутри Sales.view.
+import java.io.Writer; // Копия текста отчета, например на консоль.
+import java.nio.file.*; // Каталог, файл отчета и его размер.
+
+public enum SalesReport { // Отчеты, доступные в меню и в пакетном режиме.
+    TOTAL("total", "total_sales_report", "Отчет об общем объеме продаж"),
+    POPULAR("popular", "popular_products_report", "Отчет о пяти самых популярных товарах: "),
+    UNPOPULAR("unpopular", "unpopular_products_report", "Отчет о пяти самых непопулярных товарах: "),
+    CUSTOMERS("customers", "customers_report", "Отчет о покупателях"),
+    TRENDS("trends", "sales_trends_report", null), // Заголовок входит в текст отчета.
+    CO_PURCHASE("copurchase", "co_purchase_report", null), // Только в пакетном режиме.
+    // Оценки по эскизам, только в пакетном режиме; по умолчанию - в приближенном режиме (--approx).
+    PRODUCT_CUSTOMERS("productcustomers", "product_customers_report", null),
+    MONTH_CUSTOMERS("monthcustomers", "month_customers_report", null),
+    PURCHASE_QUANTILES("quantiles", "purchase_quantiles_report", null);
+
+    private static final int CO_PURCHASE_SIZE = 3; // Соседей каждого продукта в отчете о совместных покупках.
+
+    private final String key; // Имя отчета в аргументах командной строки.
+    private final String baseName; // Имя файла отчета без расширения.
+    private final String title; // Заголовок файла отчета.
+
+    SalesReport(String key, String baseName, String title) {
+        this.key = key;
+        this.baseName = baseName;
+        this.title = title;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getFileName() {
+        return getFileName(ReportSink.Format.TEXT);
+    }
+
+    public String getFileName(ReportSink.Format format) {
+        return baseName + "." + format.getExtension();
+    }
+
+    public String getTitle() {
+        return title == null ? "" : title + "\n";
+    }
+
+    public boolean requiresExactData() {
+        // Отчет нельзя построить по одним эскизам приближенного режима.
+        return this == UNPOPULAR || this == CUSTOMERS || this == CO_PURCHASE;
+    }
+
+    public String build(Sales analyzer, ReportGenerator reportGenerator, double threshold) {
+        // Текст отчета без заголовка файла; threshold используется только отчетом о покупателях.
+        return ReportSink.toText(sink -> writeBody(analyzer, reportGenerator, threshold, sink));
+    }
+
+    public void write(Sales analyzer, ReportGenerator reportGenerator, double threshold, Path directory,
+                      ReportSink.Format format) throws IOException {
+        write(analyzer, reportGenerator, threshold, directory, format, null);
+    }
+
+    public void write(Sales analyzer, ReportGenerator reportGenerator, double threshold, Path directory,
+                      ReportSink.Format format, Writer echo) throws IOException {
+        // Потоковая запись отчета в файл: строки уходят в файл по мере формирования.
+        // Если задан echo, текст отчета (без заголовка файла) одновременно выводится туда, например на консоль.
+        if (requiresExactData() && analyzer.isSketchOnly()) {
+            // Проверка до открытия файла: иначе остался бы файл с одним заголовком.
+            throw new UnsupportedOperationException("Недоступно в приближенном режиме (--approx): отчет " + key);
+        }
+        Path path = directory.resolve(getFileName(format));
+        try (SalesMetrics.Timer timer = SalesMetrics.get().start(SalesMetrics.Phase.REPORT, getFileName(format))) {
+            try (ReportSink sink = ReportSink.open(path, format)) {
+                if (title != null) {
+                    sink.title(title);
+                }
+                if (echo != null) {
+                    sink.echoTo(echo);
+                }
+                // Весь отчет - один запрос к Sales: рейтинг и счетчики продаж, например, берутся из одной версии данных,
+                // даже если в режиме слежения между ними добавляются продажи.
+                analyzer.view("report/" + key, () -> {
+                    try {
+                        writeBody(analyzer, reportGenerator, threshold, sink);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            timer.bytes(Files.size(path));
+        }
+    }
+
+    private void writeBody(Sales analyzer, ReportGenerator reportGenerator, double threshold, ReportSink sink) throws IOException {
+        switch (this) {
+            case TOTAL:
+                reportGenerator.TotalSalesReport(analyzer.getTotalSalesMinor(), sink);
+                break;
+            case POPULAR:
+                reportGenerator.PopularProductsReport(analyzer.getTopProducts(), analyzer.getProductSalesCount(), sink);
+                break;
+            case UNPOPULAR:
+                reportGenerator.UnpopularProductsReport(analyzer.getUnpopularProducts(), analyzer.getProductSalesCount(), sink);
+                break;
+            case CUSTOMERS:
+                reportGenerator.CustomersReport(analyzer, threshold, sink); // Покупатели с суммой от порога.
+                break;
+            case CO_PURCHASE:
+                reportGenerator.CoPurchaseReport(analyzer, CO_PURCHASE_SIZE, sink);
+                break;
+            case PRODUCT_CUSTOMERS:
+                reportGenerator.ProductCustomersReport(analyzer, sink);
+                break;
+            case MONTH_CUSTOMERS:
+                reportGenerator.MonthCustomersReport(analyzer.getDistinctCustomersByMonth(), sink);
+                break;
+            case PURCHASE_QUANTILES:
+                reportGenerator.PurchaseQuantilesReport(analyzer, sink);
+                break;
+            default:
+                reportGenerator.SalesTrendsReport(analyzer.getMonthlySalesTrendsMinor(), sink); // Продажи по месяцам.
+        }
+    }
+
+    public static SalesReport byKey(String key) {
+        for (SalesReport report : values()) {
+            if (report.key.equals(key)) {
+                return report;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный отчет: " + key);
+    }
+}
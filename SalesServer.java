@@ -0,0 +1,319 @@
+import com.sun.net.httpserver.*; // Встроенный HTTP-сервер JDK.
+import java.io.IOException; // Ошибки ввода-вывода при ответе.
+import java.io.OutputStream; // Тело ответа.
+import java.io.UncheckedIOException; // Запись в StringBuilder не бросает IOException.
+import java.net.InetSocketAddress; // Адрес прослушивания.
+import java.net.URLDecoder; // Разбор параметров запроса.
+import java.nio.charset.StandardCharsets; // Ответы в UTF-8.
+import java.time.LocalDateTime; // Границы интервала тенденций.
+import java.time.format.DateTimeParseException; // Некорректные границы интервала.
+import java.util.*; // Коллекции Map, List и др.
+import java.util.concurrent.*; // Кэш ответов и исполнитель запросов.
+import java.util.function.Function; // Построение ответа по параметрам.
+import java.util.logging.Logger; // Журналирование запуска и ошибок.
+
+public class SalesServer implements AutoCloseable { // HTTP-сервис отчетов в JSON поверх общего экземпляра Sales.
+    private static final Logger logger = Logger.getLogger(SalesServer.class.getName());
+    private static final int MAX_CACHED = 1024; // Ограничение числа закэшированных вариантов параметров.
+    private static final int MAX_LIMIT = 10_000; // Наибольшая страница покупателей.
+    private static final int MAX_BUCKETS = 10_000; // Наибольшее число интервалов в ответе о тенденциях.
+
+    private final Sales analyzer;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Ответы по ключу "путь?параметры": каждый вычисляется один раз на версию набора данных,
+    // одновременные запросы с тем же ключом ждут одно и то же вычисление.
+    private final ConcurrentMap<String, CachedResponse> cache = new ConcurrentHashMap<>();
+
+    public SalesServer(Sales analyzer, int port) throws IOException {
+        this.analyzer = analyzer;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = VirtualThreads.newPerTaskExecutor("http");
+        server.setExecutor(executor); // Каждый запрос - отдельный (по возможности виртуальный) поток.
+        route("/api/total", this::total);
+        route("/api/products/top", params -> products(params, true));
+        route("/api/products/bottom", params -> products(params, false));
+        route("/api/customers", this::customers);
+        route("/api/trends", this::trends);
+        server.createContext("/", exchange -> { // Прочие пути.
+            try {
+                send(exchange, 404, error("Не найдено: " + exchange.getRequestURI().getPath()));
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    public static int parsePort(String[] args) {
+        // Аргумент --serve[=порт] включает HTTP-сервис, по умолчанию порт 8080; 0 - сервис выключен.
+        for (String arg : args) {
+            if (arg.equals("--serve")) {
+                return 8080;
+            }
+            if (arg.startsWith("--serve=")) {
+                return Integer.parseInt(arg.substring("--serve=".length()));
+            }
+        }
+        return 0;
+    }
+
+    public void start() {
+        server.start();
+        logger.info("HTTP-сервис отчетов: http://localhost:" + getPort() + "/api/");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    private void route(String path, Function<Map<String, String>, String> handler) {
+        server.createContext(path, exchange -> {
+            try {
+                handle(exchange, path, handler);
+            } catch (RuntimeException e) {
+                logger.severe("Ошибка обработки " + exchange.getRequestURI() + ": " + e);
+                send(exchange, 500, error("Внутренняя ошибка"));
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private void handle(HttpExchange exchange, String path, Function<Map<String, String>, String> handler) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals(path)) {
+            send(exchange, 404, error("Не найдено: " + exchange.getRequestURI().getPath()));
+            return;
+        }
+        if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            send(exchange, 405, error("Метод не поддерживается: " + exchange.getRequestMethod()));
+            return;
+        }
+        Map<String, String> params;
+        CachedResponse response;
+        try {
+            params = parseQuery(exchange.getRequestURI().getRawQuery());
+            response = cached(path + "?" + params, () -> handler.apply(params));
+        } catch (IllegalArgumentException | DateTimeParseException | UnsupportedOperationException e) {
+            send(exchange, 400, error(e.getMessage())); // В том числе запрос точных данных в приближенном режиме.
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", response.etag);
+        exchange.getResponseHeaders().set("X-Dataset-Version", String.valueOf(response.version));
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache"); // Клиент переспрашивает с If-None-Match.
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && Arrays.asList(ifNoneMatch.split("\\s*,\\s*")).contains(response.etag)) {
+            exchange.sendResponseHeaders(304, -1); // Данные не изменились: тело не передается.
+            return;
+        }
+        send(exchange, 200, response.body);
+    }
+
+    private CachedResponse cached(String key, Callable<String> compute) {
+        // Ответ для текущей версии набора данных; при устаревшей версии запись заменяется.
+        while (true) {
+            long version = analyzer.getVersion();
+            CachedResponse current = cache.get(key);
+            if (current != null && current.version == version) {
+                return current.await();
+            }
+            if (current == null && cache.size() >= MAX_CACHED) {
+                cache.clear(); // Слишком много разных параметров: кэш начинается заново.
+            }
+            CachedResponse fresh = new CachedResponse(version);
+            boolean won = current == null ? cache.putIfAbsent(key, fresh) == null : cache.replace(key, current, fresh);
+            if (won) {
+                fresh.compute(compute);
+                if (fresh.failed()) {
+                    cache.remove(key, fresh); // Ошибка не кэшируется.
+                }
+                return fresh.await();
+            }
+        }
+    }
+
+    // Каждый ответ строится под одной блокировкой чтения (Sales.view): его части не расходятся,
+    // даже если между ними в режиме слежения добавляются продажи.
+
+    private String total(Map<String, String> params) {
+        return analyzer.view("api/total", () -> "{\"salesCount\":" + analyzer.getSalesCount()
+                + ",\"totalAmount\":" + Money.format(analyzer.getTotalSalesMinor()) + "}");
+    }
+
+    private String products(Map<String, String> params, boolean top) {
+        // Параметры: k (по умолчанию 5), by=count|revenue (по умолчанию count).
+        int k = intParam(params, "k", 5, 0, MAX_LIMIT);
+        ProductRanking.RankBy rankBy = ProductRanking.RankBy.valueOf(params.getOrDefault("by", "count").toUpperCase(Locale.ROOT));
+        return analyzer.view("api/products", () -> {
+            List<Product> products = top ? analyzer.getTopProducts(k, rankBy) : analyzer.getUnpopularProducts(k, rankBy);
+            Map<Integer, Long> salesCount = analyzer.getProductSalesCount();
+            StringBuilder json = new StringBuilder("{\"by\":\"").append(rankBy.name().toLowerCase(Locale.ROOT)).append("\",\"products\":[");
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                json.append(i > 0 ? "," : "")
+                        .append("{\"id\":").append(product.getProductId())
+                        .append(",\"name\":").append(Json.quote(product.getProductName()))
+                        .append(",\"price\":").append(Money.format(product.getPriceMinor()))
+                        .append(",\"salesCount\":").append(salesCount.getOrDefault(product.getProductId(), 0L)).append('}');
+            }
+            return json.append("]}").toString();
+        });
+    }
+
+    private String customers(Map<String, String> params) {
+        // Параметры: threshold (сумма в рублях, по умолчанию 0), offset и limit для страниц (по умолчанию 0 и 100).
+        long thresholdMinor = moneyParam(params, "threshold");
+        int offset = intParam(params, "offset", 0, 0, Integer.MAX_VALUE);
+        int limit = intParam(params, "limit", 100, 0, MAX_LIMIT);
+        StringBuilder rows = new StringBuilder();
+        int count;
+        try {
+            // Число покупателей и страница берутся одним обходом индекса затрат под одной блокировкой.
+            count = analyzer.forEachTopCustomer(thresholdMinor, offset, limit, (customer, purchaseCount, spentMinor) ->
+                    rows.append(rows.length() > 0 ? "," : "")
+                            .append("{\"id\":").append(customer.getCustomerId())
+                            .append(",\"name\":").append(Json.quote(customer.getCustomerName()))
+                            .append(",\"purchaseCount\":").append(purchaseCount)
+                            .append(",\"totalSpent\":").append(Money.format(spentMinor)).append('}'));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "{\"threshold\":" + Money.format(thresholdMinor) + ",\"count\":" + count
+                + ",\"customers\":[" + rows + "]}";
+    }
+
+    private String trends(Map<String, String> params) {
+        // Параметры: granularity=hour|day|week|month|year (по умолчанию month), from и to в формате ISO.
+        // Интервалов не больше MAX_BUCKETS, иначе 400: иначе мелкий шаг на большом периоде строит огромный ответ.
+        TimeIndex.Granularity granularity = TimeIndex.Granularity.valueOf(
+                params.getOrDefault("granularity", "month").toUpperCase(Locale.ROOT));
+        LocalDateTime fromParam = params.containsKey("from") ? LocalDateTime.parse(params.get("from")) : null;
+        LocalDateTime toParam = params.containsKey("to") ? LocalDateTime.parse(params.get("to")) : null;
+        return analyzer.view("api/trends", () -> {
+            List<TimeIndex.Bucket> buckets = Collections.emptyList();
+            if (analyzer.isSketchOnly() && fromParam == null && toParam == null) {
+                buckets = analyzer.getSalesTrends(granularity); // Приближенный режим: итоги по месяцам из эскизов.
+            } else if (analyzer.getFirstSaleTime() != null) {
+                LocalDateTime from = fromParam != null ? fromParam : analyzer.getFirstSaleTime();
+                LocalDateTime to = toParam != null ? toParam : analyzer.getLastSaleTime().plusSeconds(1);
+                long count = granularity.count(from, to);
+                if (count > MAX_BUCKETS) {
+                    throw new IllegalArgumentException("Слишком много интервалов (" + count + ", не больше " + MAX_BUCKETS
+                            + "): уменьшите период или увеличьте шаг");
+                }
+                buckets = analyzer.getSalesTrends(from, to, granularity); // Партиции отбираются по [from, to).
+            }
+            StringBuilder json = new StringBuilder("{\"granularity\":\"").append(granularity.name().toLowerCase(Locale.ROOT)).append("\",\"buckets\":[");
+            for (int i = 0; i < buckets.size(); i++) {
+                TimeIndex.Bucket bucket = buckets.get(i);
+                json.append(i > 0 ? "," : "")
+                        .append("{\"start\":\"").append(bucket.getStart())
+                        .append("\",\"end\":\"").append(bucket.getEnd())
+                        .append("\",\"count\":").append(bucket.getCount())
+                        .append(",\"amount\":").append(Money.format(bucket.getRevenueMinor())).append('}');
+            }
+            return json.append("]}").toString();
+        });
+    }
+
+    private static long moneyParam(Map<String, String> params, String name) {
+        // Сумма в рублях -> копейки; сумма, не помещающаяся в long копеек, - ошибка запроса, а не сервера.
+        String value = params.getOrDefault(name, "0");
+        try {
+            return Money.fromDouble(Double.parseDouble(value));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Параметр " + name + " вне диапазона: " + value);
+        }
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue, int min, int max) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int result = Integer.parseInt(value);
+        if (result < min || result > max) {
+            throw new IllegalArgumentException("Параметр " + name + " вне диапазона [" + min + ", " + max + "]: " + value);
+        }
+        return result;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        // Параметры упорядочены по имени, чтобы одинаковые запросы давали один ключ кэша.
+        Map<String, String> params = new TreeMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!name.isEmpty()) {
+                params.put(name, value);
+            }
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(String.valueOf(message)) + "}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static final class CachedResponse { // Ответ для одной версии данных; вычисляется одним потоком.
+        private final long version;
+        private final CompletableFuture<CachedResponse> done = new CompletableFuture<>();
+        private byte[] body; // Тело ответа в UTF-8, кодируется один раз.
+        private String etag;
+
+        CachedResponse(long version) {
+            this.version = version;
+        }
+
+        void compute(Callable<String> compute) {
+            try {
+                body = compute.call().getBytes(StandardCharsets.UTF_8);
+                // Сильный ETag: версия данных и хэш тела.
+                etag = "\"" + version + "-" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+                done.complete(this);
+            } catch (Exception e) {
+                done.completeExceptionally(e);
+            }
+        }
+
+        boolean failed() {
+            return done.isCompletedExceptionally();
+        }
+
+        CachedResponse await() {
+            try {
+                return done.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause(); // Например IllegalArgumentException -> ответ 400.
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.IOException; // Ошибки чтения файла продаж.
+import java.nio.file.Path; // Путь к sales.csv для потоковой загрузки.
+import java.time.*; // Месяцы продаж.
+import java.util.*; // Коллекции List, Map, TreeMap и др.
+import java.util.concurrent.ForkJoinPool; // Пул потоков для параллельного построения.
+import java.util.concurrent.RecursiveTask; // Рекурсивное деление диапазона строк.
+
+public class SalesSketches { // Приближенная аналитика продаж в ограниченной памяти; эскизы фрагментов и потоков сливаются.
+    private static final int MIN_LEAF_SIZE = 1 << 18; // Минимальное число строк в листовом фрагменте.
+
+    public static class Config { // Допустимые ошибки эскизов; от них зависит занимаемая память, но не от числа продаж.
+        public static final Config DEFAULT = new Config(0.0005, 0.01, 1024, 0.01, 0.1, 0.01);
+
+        private final double epsilon; // Ошибка Count-Min: доля от суммы всех продаж (или всей выручки).
+        private final double delta; // Вероятность превысить ошибку epsilon.
+        private final int heavyHitters; // Сколько кандидатов в самые продаваемые продукты отслеживается.
+        private final double distinctError; // Относительная ошибка числа покупателей всего и по месяцам.
+        private final double productDistinctError; // То же по продукту: регистры HyperLogLog на каждый продукт справочника.
+        private final double quantileAccuracy; // Относительная ошибка квантилей суммы покупки.
+
+        public Config(double epsilon, double delta, int heavyHitters, double distinctError,
+                      double productDistinctError, double quantileAccuracy) {
+            this.epsilon = epsilon;
+            this.delta = delta;
+            this.heavyHitters = heavyHitters;
+            this.distinctError = distinctError;
+            this.productDistinctError = productDistinctError;
+            this.quantileAccuracy = quantileAccuracy;
+        }
+
+        public static Config parse(String[] args) {
+            // Аргумент --approx[=epsilon] включает приближенный режим; null - режим выключен.
+            for (String arg : args) {
+                if (arg.equals("--approx")) {
+                    return DEFAULT;
+                }
+                if (arg.startsWith("--approx=")) {
+                    return DEFAULT.withEpsilon(Double.parseDouble(arg.substring("--approx=".length())));
+                }
+            }
+            return null;
+        }
+
+        public Config withEpsilon(double epsilon) {
+            return new Config(epsilon, delta, heavyHitters, distinctError, productDistinctError, quantileAccuracy);
+        }
+
+        public double getEpsilon() {
+            return epsilon;
+        }
+
+        public double getDelta() {
+            return delta;
+        }
+
+        public int getHeavyHitters() {
+            return heavyHitters;
+        }
+    }
+
+    private final Config config;
+    private final CatalogIndex<Product> products; // Цены и порядковые номера продуктов.
+    private final CountMinSketch productCount; // Количество продаж по ID продукта.
+    private final CountMinSketch productRevenue; // Выручка в копейках по ID продукта.
+    private final HyperLogLog customers; // Различные покупатели за весь период.
+    private final HyperLogLog[] productCustomers; // Различные покупатели по порядковому номеру продукта, создаются при первой продаже.
+    private final TreeMap<YearMonth, Month> months = new TreeMap<>(); // Итоги и различные покупатели по месяцам.
+    private final QuantileSketch purchaseAmount; // Распределение суммы одной покупки в копейках.
+    private long salesCount;
+    private long monthStart = Long.MAX_VALUE; // Границы месяца последней продажи [monthStart, monthEnd) в секундах.
+    private long monthEnd = Long.MIN_VALUE;
+    private Month currentMonth; // Месяц последней продажи: продажи обычно идут по времени подряд.
+
+    private static class Month { // Продажи одного месяца: число и выручка точно, покупатели - оценкой.
+        private final HyperLogLog customers;
+        private long count;
+        private long revenue; // В копейках.
+
+        Month(HyperLogLog customers) {
+            this.customers = customers;
+        }
+
+        Month merge(Month other) {
+            customers.merge(other.customers);
+            count += other.count;
+            revenue += other.revenue;
+            return this;
+        }
+    }
+
+    public SalesSketches(Config config, CatalogIndex<Product> products) {
+        this.config = config;
+        this.products = products;
+        this.productCount = new CountMinSketch(config.epsilon, config.delta, config.heavyHitters);
+        this.productRevenue = new CountMinSketch(config.epsilon, config.delta, config.heavyHitters);
+        this.customers = new HyperLogLog(HyperLogLog.precisionFor(config.distinctError));
+        this.productCustomers = new HyperLogLog[products.size()];
+        this.purchaseAmount = new QuantileSketch(config.quantileAccuracy, 2048);
+    }
+
+    public static SalesSketches compute(SalesTable sales, CatalogIndex<Product> products, Config config, int parallelism) {
+        // Построение по таблице продаж; в параллельном режиме - по одному листу на поток: каждый лист держит
+        // полный набор эскизов, поэтому их число ограничено числом потоков, а не размером таблицы.
+        if (parallelism <= 1) {
+            return new SketchTask(sales, products, config, 0, sales.size(), sales.size()).compute(); // Один проход.
+        }
+        int leafSize = (int) Math.max(MIN_LEAF_SIZE, (sales.size() + (long) parallelism - 1) / parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new SketchTask(sales, products, config, 0, sales.size(), leafSize));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static SalesSketches load(Path salesFile, long limit, CatalogIndex<Product> products,
+                                     CatalogIndex<Customer> customers, Config config, int parallelism) throws IOException {
+        // Потоковое построение прямо из sales.csv: продажи не сохраняются, эскизы фрагментов файла сливаются
+        // по мере разбора, так что память не зависит ни от числа продаж, ни от размера файла.
+        // Фрагменты разбирают parallelism потоков; эскизы сливаются без потерь, результат от него не зависит.
+        return CsvLoader.reduceChunks(salesFile, limit, parallelism, () -> new SalesSketches(config, products),
+                (sketches, record) -> sketches.addRecord(record, customers), SalesSketches::merge);
+    }
+
+    private static class SketchTask extends RecursiveTask<SalesSketches> { // Эскизы диапазона строк [from, to).
+        private static final long serialVersionUID = 1L;
+
+        private final SalesTable sales;
+        private final CatalogIndex<Product> products;
+        private final Config config;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        SketchTask(SalesTable sales, CatalogIndex<Product> products, Config config, int from, int to, int leafSize) {
+            this.sales = sales;
+            this.products = products;
+            this.config = config;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected SalesSketches compute() {
+            if (to - from <= leafSize) {
+                SalesSketches leaf = new SalesSketches(config, products);
+                for (int row = from; row < to; row++) {
+                    leaf.add(sales.productId(row), sales.customerId(row), sales.epochSecond(row));
+                }
+                return leaf;
+            }
+            long leaves = ((long) to - from + leafSize - 1) / leafSize;
+            int middle = (int) (from + (leaves / 2) * leafSize); // Граница кратна размеру листа.
+            SketchTask left = new SketchTask(sales, products, config, from, middle, leafSize);
+            SketchTask right = new SketchTask(sales, products, config, middle, to, leafSize);
+            invokeAll(left, right);
+            return left.join().merge(right.join());
+        }
+    }
+
+    public void add(int productId, int customerId, long epochSecond) {
+        int product = products.requireOrdinal(productId);
+        long price = products.byOrdinal(product).getPriceMinor();
+        productCount.add(productId, 1);
+        productRevenue.add(productId, price);
+        customers.add(customerId);
+        HyperLogLog buyers = productCustomers[product];
+        if (buyers == null) {
+            buyers = productCustomers[product] = new HyperLogLog(HyperLogLog.precisionFor(config.productDistinctError));
+        }
+        buyers.add(customerId);
+        Month month = month(epochSecond);
+        month.customers.add(customerId);
+        month.count++;
+        month.revenue += price;
+        purchaseAmount.add(price);
+        salesCount++;
+    }
+
+    void addRecord(CsvRecord record, CatalogIndex<Customer> customers) {
+        // Формат строки совпадает с Sale.fromCSV: saleId,saleDateTime,customerId,productId.
+        // Ссылки проверяются, как при точной загрузке: продажа не может ссылаться на отсутствующие записи.
+        record.nextInt();
+        long epochSecond = record.nextEpochSecond();
+        int customerId = record.nextInt();
+        int productId = record.nextInt();
+        if (!products.contains(productId) || !customers.contains(customerId)) {
+            throw new IllegalArgumentException("Продажа ссылается на отсутствующие записи: продукт " + productId
+                    + ", покупатель " + customerId);
+        }
+        add(productId, customerId, epochSecond);
+    }
+
+    public SalesSketches merge(SalesSketches other) {
+        // Слияние эскизов с теми же параметрами; other после слияния использовать нельзя.
+        productCount.merge(other.productCount);
+        productRevenue.merge(other.productRevenue);
+        customers.merge(other.customers);
+        for (int i = 0; i < productCustomers.length; i++) {
+            if (other.productCustomers[i] != null) {
+                productCustomers[i] = productCustomers[i] == null ? other.productCustomers[i]
+                        : productCustomers[i].merge(other.productCustomers[i]);
+            }
+        }
+        other.months.forEach((month, totals) -> months.merge(month, totals, Month::merge));
+        currentMonth = null; // Объект месяца мог смениться: кэш сбрасывается.
+        monthStart = Long.MAX_VALUE;
+        monthEnd = Long.MIN_VALUE;
+        purchaseAmount.merge(other.purchaseAmount);
+        salesCount += other.salesCount;
+        return this;
+    }
+
+    public long getSalesCount() {
+        return salesCount;
+    }
+
+    public long getTotalRevenue() {
+        // Сумма продаж в копейках - точная: Count-Min хранит общий вес без ошибки.
+        return productRevenue.total();
+    }
+
+    public int[] topProducts(int k, ProductRanking.RankBy rankBy) {
+        // ID до k самых продаваемых продуктов среди отслеживаемых кандидатов, по убыванию оценки.
+        if (k > config.heavyHitters) {
+            throw new IllegalArgumentException("В приближенном режиме рейтинг ограничен " + config.heavyHitters + " продуктами: " + k);
+        }
+        return (rankBy == ProductRanking.RankBy.REVENUE ? productRevenue : productCount).top(k);
+    }
+
+    public long estimateCount(int productId) {
+        // Оценка сверху числа продаж продукта.
+        return productCount.estimate(productId);
+    }
+
+    public long estimateRevenue(int productId) {
+        // Оценка сверху выручки продукта в копейках.
+        return productRevenue.estimate(productId);
+    }
+
+    public long distinctCustomers() {
+        return customers.estimate();
+    }
+
+    public long distinctCustomers(int productId) {
+        HyperLogLog buyers = productCustomers[products.requireOrdinal(productId)];
+        return buyers == null ? 0 : buyers.estimate();
+    }
+
+    public Map<YearMonth, Long> distinctCustomersByMonth() {
+        // Оценка числа различных покупателей по месяцам в хронологическом порядке.
+        Map<YearMonth, Long> result = new LinkedHashMap<>();
+        months.forEach((month, totals) -> result.put(month, totals.customers.estimate()));
+        return result;
+    }
+
+    public List<TimeIndex.Bucket> monthlyBuckets() {
+        // Точные число продаж и выручка по месяцам от первого до последнего месяца с продажами, включая пустые, -
+        // как TimeIndex.buckets с шагом MONTH: месяцев мало, счетчики не нужны.
+        List<TimeIndex.Bucket> result = new ArrayList<>();
+        if (months.isEmpty()) {
+            return result;
+        }
+        YearMonth last = months.lastKey();
+        for (YearMonth month = months.firstKey(); !month.isAfter(last); month = month.plusMonths(1)) {
+            Month totals = months.get(month);
+            result.add(new TimeIndex.Bucket(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay(),
+                    totals == null ? 0 : totals.count, totals == null ? 0 : totals.revenue));
+        }
+        return result;
+    }
+
+    public long purchaseAmountQuantile(double q) {
+        // Квантиль суммы одной покупки в копейках, например q = 0.5 - медиана.
+        return purchaseAmount.quantile(q);
+    }
+
+    public long memoryBytes() {
+        // Память эскизов: не зависит от числа продаж, только от параметров, размера справочника и числа месяцев.
+        long bytes = productCount.memoryBytes() + productRevenue.memoryBytes() + customers.memoryBytes()
+                + purchaseAmount.memoryBytes();
+        for (HyperLogLog buyers : productCustomers) {
+            bytes += buyers == null ? 0 : buyers.memoryBytes();
+        }
+        for (Month month : months.values()) {
+            bytes += month.customers.memoryBytes() + 2 * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private Month month(long epochSecond) {
+        if (epochSecond < monthStart || epochSecond >= monthEnd) {
+            YearMonth month = YearMonth.from(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+            monthStart = month.atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            monthEnd = month.plusMonths(1).atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            currentMonth = months.computeIfAbsent(month,
+                    key -> new Month(new HyperLogLog(HyperLogLog.precisionFor(config.distinctError))));
+        }
+        return currentMonth;
+    }
+}
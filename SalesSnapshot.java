@@ -0,0 +1,233 @@
+import java.io.IOException; // Ошибки чтения и записи снимка.
+import java.nio.ByteBuffer; // Буферы для записи и чтения секций.
+import java.nio.IntBuffer; // Целочисленные колонки продаж.
+import java.nio.LongBuffer; // Колонка времени продаж.
+import java.nio.MappedByteBuffer; // Отображение снимка в память.
+import java.nio.channels.FileChannel; // Канал для записи и отображения файла.
+import java.nio.charset.StandardCharsets; // Названия продуктов и имена клиентов в UTF-8.
+import java.nio.file.*; // Пути, атрибуты и атомарная замена файла.
+import java.util.*; // Коллекции List, ArrayList и др.
+import java.util.logging.Logger; // Журналирование использования и пересборки снимка.
+
+public class SalesSnapshot { // Двоичный снимок разобранных данных и агрегатов для быстрого запуска.
+    private static final Logger logger = Logger.getLogger(SalesSnapshot.class.getName());
+    private static final int MAGIC = 0x53534E50; // "SSNP".
+    private static final int VERSION = 2;
+    private static final long WINDOW = 1L << 30; // Большие колонки отображаются окнами по 1 ГБ.
+
+    private final Path snapshotFile; // Файл снимка.
+    private final List<Path> sources; // Исходные CSV: продажи, продукты, клиенты.
+
+    public SalesSnapshot(Path snapshotFile, Path salesFile, Path productsFile, Path customersFile) {
+        this.snapshotFile = snapshotFile;
+        this.sources = List.of(salesFile, productsFile, customersFile);
+    }
+
+    public Sales load(boolean offHeap, long salesEnd) {
+        // Возвращает Sales из снимка или null, если снимка нет, он поврежден или CSV изменились.
+        // salesEnd - граница загрузки sales.csv: снимок годится, только если покрывает ровно столько байт,
+        // иначе слежение, начиная с salesEnd, применило бы часть продаж снимка повторно или пропустило бы их.
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            ByteBuffer prefix = channel.map(FileChannel.MapMode.READ_ONLY, 0, 16);
+            if (prefix.getInt() != MAGIC || prefix.getInt() != VERSION) {
+                logger.info("Снимок " + snapshotFile + " другой версии, будет пересобран");
+                return null;
+            }
+            long headerLength = prefix.getLong();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 16, headerLength);
+            for (Path source : sources) {
+                long size = source == sources.get(0) ? salesEnd : Files.size(source);
+                if (header.getLong() != size
+                        || header.getLong() != Files.getLastModifiedTime(source).toMillis()) {
+                    logger.info("Исходные данные изменились, снимок " + snapshotFile + " будет пересобран");
+                    return null;
+                }
+            }
+            int productCount = header.getInt();
+            List<Product> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                int id = header.getInt();
+                long priceMinor = header.getLong();
+                products.add(Product.ofMinorUnits(id, readString(header), priceMinor));
+            }
+            int customerCount = header.getInt();
+            List<Customer> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                int id = header.getInt();
+                customers.add(new Customer(id, readString(header)));
+            }
+            long[] prices = products.stream().mapToLong(Product::getPriceMinor).toArray();
+            SalesAggregates aggregates = SalesAggregates.readFrom(header, prices, customers.size());
+            int rows = header.getInt();
+
+            long position = align(16 + headerLength);
+            IntBuffer saleIds = readInts(channel, position, rows, offHeap);
+            position += (long) rows * Integer.BYTES;
+            IntBuffer customerIds = readInts(channel, position, rows, offHeap);
+            position += (long) rows * Integer.BYTES;
+            IntBuffer productIds = readInts(channel, position, rows, offHeap);
+            position = align(position + (long) rows * Integer.BYTES);
+            LongBuffer epochSeconds = readLongs(channel, position, rows, offHeap);
+
+            SalesTable table = new SalesTable(saleIds, epochSeconds, customerIds, productIds, rows, offHeap);
+            logger.info("Данные загружены из снимка " + snapshotFile + ", продаж: " + rows);
+            return new Sales(table, products, customers, aggregates);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Снимок " + snapshotFile + " не прочитан (" + e + "), будет пересобран");
+            return null;
+        }
+    }
+
+    public void save(Sales sales, long salesSize) throws IOException {
+        // Запись снимка во временный файл и атомарная замена, чтобы не оставить половину снимка.
+        // salesSize - число байт sales.csv, вошедших в загруженные данные.
+        SalesAggregates aggregates = sales.getAggregates();
+        SalesTable table = sales.getSalesTable();
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(0); // Длина заголовка, заполняется после записи.
+
+            out.putLong(salesSize);
+            out.putLong(Files.getLastModifiedTime(sources.get(0)).toMillis());
+            for (Path source : sources.subList(1, sources.size())) {
+                out.putLong(Files.size(source));
+                out.putLong(Files.getLastModifiedTime(source).toMillis());
+            }
+            out.putInt(sales.getProducts().size());
+            for (Product product : sales.getProducts()) {
+                out.putInt(product.getProductId());
+                out.putLong(product.getPriceMinor());
+                out.putString(product.getProductName());
+            }
+            out.putInt(sales.getCustomers().size());
+            for (Customer customer : sales.getCustomers()) {
+                out.putInt(customer.getCustomerId());
+                out.putString(customer.getCustomerName());
+            }
+            aggregates.writeTo(out);
+            out.putInt(table.size());
+            long headerLength = out.position() - 16;
+
+            out.padTo(align(out.position()));
+            for (int row = 0; row < table.size(); row++) {
+                out.putInt(table.saleId(row));
+            }
+            for (int row = 0; row < table.size(); row++) {
+                out.putInt(table.customerId(row));
+            }
+            for (int row = 0; row < table.size(); row++) {
+                out.putInt(table.productId(row));
+            }
+            out.padTo(align(out.position()));
+            for (int row = 0; row < table.size(); row++) {
+                out.putLong(table.epochSecond(row));
+            }
+            out.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, headerLength), 8);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Снимок данных сохранен в " + snapshotFile);
+    }
+
+    private static IntBuffer readInts(FileChannel channel, long position, int count, boolean offHeap) throws IOException {
+        long bytes = (long) count * Integer.BYTES;
+        if (offHeap && bytes <= Integer.MAX_VALUE) {
+            // Колонка остается в отображенной памяти: данные не копируются в кучу.
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).asIntBuffer();
+        }
+        int[] values = new int[count];
+        for (long done = 0; done < bytes; done += WINDOW) {
+            long length = Math.min(WINDOW, bytes - done);
+            channel.map(FileChannel.MapMode.READ_ONLY, position + done, length).asIntBuffer()
+                    .get(values, (int) (done / Integer.BYTES), (int) (length / Integer.BYTES));
+        }
+        return IntBuffer.wrap(values);
+    }
+
+    private static LongBuffer readLongs(FileChannel channel, long position, int count, boolean offHeap) throws IOException {
+        long bytes = (long) count * Long.BYTES;
+        if (offHeap && bytes <= Integer.MAX_VALUE) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).asLongBuffer();
+        }
+        long[] values = new long[count];
+        for (long done = 0; done < bytes; done += WINDOW) {
+            long length = Math.min(WINDOW, bytes - done);
+            channel.map(FileChannel.MapMode.READ_ONLY, position + done, length).asLongBuffer()
+                    .get(values, (int) (done / Long.BYTES), (int) (length / Long.BYTES));
+        }
+        return LongBuffer.wrap(values);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L; // Колонки выравниваются на 8 байт.
+    }
+
+    static class Writer { // Буферизованная последовательная запись примитивов в канал.
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private long flushed; // Число байт, уже записанных в канал.
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void padTo(long position) throws IOException {
+            while (position() < position) {
+                ensureRemaining(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.IOException; // Ошибки чтения файла.
+import java.nio.ByteBuffer; // Выделение памяти вне кучи.
+import java.nio.ByteOrder; // Порядок байтов для буферов вне кучи.
+import java.nio.IntBuffer; // Целочисленные колонки.
+import java.nio.LongBuffer; // Колонка времени продажи.
+import java.nio.file.Path; // Путь к файлу продаж.
+import java.time.LocalDateTime; // Представление времени продажи для объектов Sale.
+import java.time.ZoneOffset; // Время в файле хранится без зоны, секунды считаются от эпохи UTC.
+import java.util.*; // Коллекции List, AbstractList и др.
+
+public class SalesTable { // Колоночное хранение продаж в примитивных массивах вместо списка объектов Sale.
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final boolean offHeap; // Колонки размещены вне кучи (direct-буферы).
+    private IntBuffer saleIds; // ID продажи.
+    private LongBuffer epochSeconds; // Время продажи в секундах от эпохи.
+    private IntBuffer customerIds; // ID покупателя.
+    private IntBuffer productIds; // ID продукта.
+    private int size; // Число заполненных строк.
+
+    public SalesTable(boolean offHeap) {
+        this(INITIAL_CAPACITY, offHeap);
+    }
+
+    public SalesTable(int capacity, boolean offHeap) {
+        this.offHeap = offHeap;
+        int initial = Math.max(capacity, 1);
+        this.saleIds = allocateInts(initial);
+        this.epochSeconds = allocateLongs(initial);
+        this.customerIds = allocateInts(initial);
+        this.productIds = allocateInts(initial);
+    }
+
+    SalesTable(IntBuffer saleIds, LongBuffer epochSeconds, IntBuffer customerIds, IntBuffer productIds, int size, boolean offHeap) {
+        // Таблица поверх готовых колонок, например отображенных в память из снимка.
+        // Колонки могут быть только для чтения: при первом добавлении они копируются в новую память.
+        this.offHeap = offHeap;
+        this.saleIds = saleIds;
+        this.epochSeconds = epochSeconds;
+        this.customerIds = customerIds;
+        this.productIds = productIds;
+        this.size = size;
+    }
+
+    public static SalesTable fromSales(List<Sale> sales, boolean offHeap) {
+        // Перенос готового списка объектов в колонки.
+        SalesTable table = new SalesTable(sales.size(), offHeap);
+        for (Sale sale : sales) {
+            table.append(sale.getSaleId(), toEpochSecond(sale.getSaleDateTime()), sale.getCustomerId(), sale.getProductId());
+        }
+        return table;
+    }
+
+    public static SalesTable load(Path path, boolean offHeap) throws IOException {
+        return load(path, -1, offHeap);
+    }
+
+    public static SalesTable load(Path path, long limit, boolean offHeap) throws IOException {
+        // Разбор sales.csv (первых limit байт, если limit >= 0) сразу в колонки:
+        // объекты Sale и LocalDateTime не создаются.
+        List<SalesTable> chunks = CsvLoader.loadChunks(path, limit, () -> new SalesTable(false), SalesTable::appendRecord);
+        int total = chunks.stream().mapToInt(SalesTable::size).sum();
+        SalesTable table = new SalesTable(total, offHeap);
+        for (SalesTable chunk : chunks) {
+            table.appendAll(chunk);
+        }
+        return table;
+    }
+
+    public void append(int saleId, long epochSecond, int customerId, int productId) {
+        ensureCapacity(size + 1);
+        saleIds.put(size, saleId);
+        epochSeconds.put(size, epochSecond);
+        customerIds.put(size, customerId);
+        productIds.put(size, productId);
+        size++;
+    }
+
+    public void appendRecord(CsvRecord record) {
+        // Формат строки совпадает с Sale.fromCSV: saleId,saleDateTime,customerId,productId.
+        int saleId = record.nextInt();
+        long epochSecond = record.nextEpochSecond();
+        int customerId = record.nextInt();
+        int productId = record.nextInt();
+        append(saleId, epochSecond, customerId, productId);
+    }
+
+    public void appendAll(SalesTable other) {
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            saleIds.put(size + i, other.saleIds.get(i));
+            epochSeconds.put(size + i, other.epochSeconds.get(i));
+            customerIds.put(size + i, other.customerIds.get(i));
+            productIds.put(size + i, other.productIds.get(i));
+        }
+        size += other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public boolean isDirect() {
+        // Колонки вне кучи: выделены с offHeap или отображены в память из снимка.
+        return saleIds.isDirect();
+    }
+
+    public long memoryBytes() {
+        // Память, занятая колонками (по емкости, а не по числу строк).
+        return (long) saleIds.capacity() * (Integer.BYTES * 3 + Long.BYTES);
+    }
+
+    public int saleId(int row) {
+        return saleIds.get(row);
+    }
+
+    public long epochSecond(int row) {
+        return epochSeconds.get(row);
+    }
+
+    public int customerId(int row) {
+        return customerIds.get(row);
+    }
+
+    public int productId(int row) {
+        return productIds.get(row);
+    }
+
+    public LocalDateTime dateTime(int row) {
+        return toDateTime(epochSeconds.get(row));
+    }
+
+    public Sale get(int row) {
+        // Объект Sale создается по требованию для кода, которому нужны объекты.
+        Objects.checkIndex(row, size);
+        return new Sale(saleId(row), dateTime(row), customerId(row), productId(row));
+    }
+
+    public List<Sale> asList() {
+        // Представление таблицы в виде списка только для чтения.
+        return new AbstractList<Sale>() {
+            @Override
+            public Sale get(int index) {
+                return SalesTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private void ensureCapacity(int required) {
+        int capacity = saleIds.capacity();
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, capacity * 2L));
+        saleIds = copyInts(saleIds, newCapacity);
+        epochSeconds = copyLongs(epochSeconds, newCapacity);
+        customerIds = copyInts(customerIds, newCapacity);
+        productIds = copyInts(productIds, newCapacity);
+    }
+
+    private IntBuffer copyInts(IntBuffer source, int capacity) {
+        IntBuffer target = allocateInts(capacity);
+        target.put(source.duplicate().position(0).limit(size));
+        return target;
+    }
+
+    private LongBuffer copyLongs(LongBuffer source, int capacity) {
+        LongBuffer target = allocateLongs(capacity);
+        target.put(source.duplicate().position(0).limit(size));
+        return target;
+    }
+
+    private IntBuffer allocateInts(int capacity) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Integer.BYTES)).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return IntBuffer.wrap(new int[capacity]);
+    }
+
+    private LongBuffer allocateLongs(int capacity) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Long.BYTES)).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.wrap(new long[capacity]);
+    }
+}
@@ -0,0 +1,241 @@
+import java.time.DayOfWeek; // Начало недели.
+import java.time.LocalDateTime; // Границы интервалов запросов.
+import java.time.temporal.ChronoUnit; // Усечение времени до часа и дня.
+import java.time.temporal.TemporalAdjusters; // Переход к началу недели.
+import java.util.*; // Коллекции List, ArrayList, Arrays и др.
+
+public class TimeIndex { // Индекс продаж по времени: отсортированные секунды и префиксные суммы выручки.
+    public enum Granularity { // Шаг интервалов в отчетах о тенденциях.
+        HOUR, DAY, WEEK, MONTH, YEAR;
+
+        public LocalDateTime truncate(LocalDateTime time) {
+            // Начало интервала, в который попадает момент времени.
+            switch (this) {
+                case HOUR:
+                    return time.truncatedTo(ChronoUnit.HOURS);
+                case DAY:
+                    return time.truncatedTo(ChronoUnit.DAYS);
+                case WEEK:
+                    return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+                default:
+                    return time.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+            }
+        }
+
+        public long count(LocalDateTime from, LocalDateTime to) {
+            // Число интервалов в buckets(from, to, this) без их построения.
+            LocalDateTime start = truncate(from);
+            if (!start.isBefore(to)) {
+                return 0;
+            }
+            long whole = unit().between(start, to);
+            return start.plus(whole, unit()).isBefore(to) ? whole + 1 : whole;
+        }
+
+        private ChronoUnit unit() {
+            switch (this) {
+                case HOUR:
+                    return ChronoUnit.HOURS;
+                case DAY:
+                    return ChronoUnit.DAYS;
+                case WEEK:
+                    return ChronoUnit.WEEKS;
+                case MONTH:
+                    return ChronoUnit.MONTHS;
+                default:
+                    return ChronoUnit.YEARS;
+            }
+        }
+
+        public LocalDateTime next(LocalDateTime start) {
+            // Начало следующего интервала.
+            switch (this) {
+                case HOUR:
+                    return start.plusHours(1);
+                case DAY:
+                    return start.plusDays(1);
+                case WEEK:
+                    return start.plusWeeks(1);
+                case MONTH:
+                    return start.plusMonths(1);
+                default:
+                    return start.plusYears(1);
+            }
+        }
+    }
+
+    public static class Bucket { // Итоги продаж за интервал [start, end).
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long count;
+        private final long revenueMinor;
+
+        Bucket(LocalDateTime start, LocalDateTime end, long count, long revenueMinor) {
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.revenueMinor = revenueMinor;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public LocalDateTime getEnd() {
+            return end;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getRevenueMinor() {
+            return revenueMinor;
+        }
+    }
+
+    private long[] epochs; // Время продаж по возрастанию.
+    private long[] prefixRevenue; // prefixRevenue[i] - выручка первых i продаж в порядке времени.
+    private int size;
+
+    private TimeIndex(long[] epochs, long[] prices, int size) {
+        this.epochs = epochs;
+        this.prefixRevenue = new long[epochs.length + 1];
+        this.size = size;
+        for (int i = 0; i < size; i++) {
+            prefixRevenue[i + 1] = prefixRevenue[i] + prices[i];
+        }
+    }
+
+    public static TimeIndex build(SalesTable sales, CatalogIndex<Product> products) {
+        // Продажи обычно дописываются по времени, тогда сортировка не нужна.
+        int n = sales.size();
+        long[] epochs = new long[Math.max(n, 16)];
+        long[] prices = new long[epochs.length];
+        boolean sorted = true;
+        for (int row = 0; row < n; row++) {
+            epochs[row] = sales.epochSecond(row);
+            prices[row] = products.get(sales.productId(row)).getPriceMinor();
+            sorted &= row == 0 || epochs[row - 1] <= epochs[row];
+        }
+        if (!sorted) {
+            sort(epochs, prices, 0, n - 1);
+        }
+        return new TimeIndex(epochs, prices, n);
+    }
+
+    boolean append(long epochSecond, long priceMinor) {
+        // Добавление продажи в конец индекса; false, если продажа старше последней и нужен пересчет.
+        if (size > 0 && epochSecond < epochs[size - 1]) {
+            return false;
+        }
+        if (size == epochs.length) {
+            epochs = Arrays.copyOf(epochs, size * 2);
+            prefixRevenue = Arrays.copyOf(prefixRevenue, size * 2 + 1);
+        }
+        epochs[size] = epochSecond;
+        prefixRevenue[size + 1] = prefixRevenue[size] + priceMinor;
+        size++;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LocalDateTime first() {
+        return size == 0 ? null : SalesTable.toDateTime(epochs[0]);
+    }
+
+    public LocalDateTime last() {
+        return size == 0 ? null : SalesTable.toDateTime(epochs[size - 1]);
+    }
+
+    public long count(LocalDateTime from, LocalDateTime to) {
+        // Количество продаж в интервале [from, to) за O(log n).
+        return Math.max(0, lowerBound(SalesTable.toEpochSecond(to)) - lowerBound(SalesTable.toEpochSecond(from))); // Как и revenue: пустой интервал при to <= from.
+    }
+
+    public long revenue(LocalDateTime from, LocalDateTime to) {
+        // Выручка в копейках в интервале [from, to) за O(log n).
+        int lo = lowerBound(SalesTable.toEpochSecond(from));
+        int hi = lowerBound(SalesTable.toEpochSecond(to));
+        return hi > lo ? prefixRevenue[hi] - prefixRevenue[lo] : 0;
+    }
+
+    public List<Bucket> buckets(LocalDateTime from, LocalDateTime to, Granularity granularity) {
+        // Итоги по интервалам заданного шага, упорядоченные по времени; пустые интервалы тоже входят.
+        List<Bucket> result = new ArrayList<>();
+        LocalDateTime start = granularity.truncate(from);
+        while (start.isBefore(to)) {
+            LocalDateTime end = granularity.next(start);
+            LocalDateTime lo = start.isBefore(from) ? from : start;
+            LocalDateTime hi = end.isAfter(to) ? to : end;
+            result.add(new Bucket(start, end, count(lo, hi), revenue(lo, hi)));
+            start = end;
+        }
+        return result;
+    }
+
+    private int lowerBound(long epochSecond) {
+        // Первая позиция, где время продажи >= epochSecond.
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (epochs[mid] < epochSecond) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void sort(long[] keys, long[] values, int lo, int hi) {
+        // Быстрая сортировка двух параллельных массивов по ключу без упаковки в объекты.
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                for (int i = lo + 1; i <= hi; i++) {
+                    for (int j = i; j > lo && keys[j - 1] > keys[j]; j--) {
+                        swap(keys, values, j - 1, j);
+                    }
+                }
+                return;
+            }
+            long pivot = keys[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // Рекурсия по меньшей части ограничивает глубину стека.
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,26 @@
+import java.util.concurrent.*; // Исполнители задач.
+import java.util.concurrent.atomic.AtomicInteger; // Нумерация потоков запасного пула.
+import java.util.logging.Logger; // Журналирование выбранного вида потоков.
+
+public final class VirtualThreads { // Исполнитель "поток на задачу" на виртуальных потоках, если JVM их поддерживает.
+    private static final Logger logger = Logger.getLogger(VirtualThreads.class.getName());
+
+    private VirtualThreads() {
+    }
+
+    public static ExecutorService newPerTaskExecutor(String name) {
+        // На JDK 21+ - Executors.newVirtualThreadPerTaskExecutor(); метод ищется через отражение,
+        // чтобы исходники собирались и на JDK 17. Иначе - пул платформенных демон-потоков без ограничения размера.
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.fine("Виртуальные потоки недоступны, используются платформенные потоки");
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.IOException; // Ошибки загрузки CSV.
+import java.nio.file.Path; // Каталог набора данных.
+import java.time.LocalDateTime; // Границы интервала тенденций.
+import java.util.List; // Справочники.
+
+public class SalesWorkload implements sales.bench.Workload { // Вызовы приложения для бенчмарков (пакет по умолчанию).
+    private Path salesFile;
+    private Path productsFile;
+    private Path customersFile;
+    private boolean offHeap;
+    private int parallelism;
+    private SalesTable table;
+    private List<Sale> saleList;
+    private List<Product> products;
+    private List<Customer> customers;
+    private Sales sales; // Загруженный экземпляр с прогретыми кэшами.
+    private Sales appendTarget; // Экземпляр, в который добавляются продажи.
+    private SalesTable delta; // Добавляемые продажи.
+
+    @Override
+    public void setUp(Path directory, boolean offHeap, int parallelism) throws IOException {
+        this.salesFile = directory.resolve("sales.csv");
+        this.productsFile = directory.resolve("products.csv");
+        this.customersFile = directory.resolve("customers.csv");
+        this.offHeap = offHeap;
+        this.parallelism = parallelism;
+        table = SalesTable.load(salesFile, offHeap);
+        saleList = table.asList();
+        products = Main.loadData(productsFile.toString(), Product::fromCSV);
+        customers = Main.loadData(customersFile.toString(), Customer::fromCSV);
+        sales = newSales();
+        sales.getCustomerSpendIndex(); // Агрегаты и индексы строятся до замеров запросов.
+        sales.getTimeIndex();
+    }
+
+    private Sales newSales() {
+        Sales result = new Sales(table, products, customers);
+        result.setParallelism(parallelism);
+        return result;
+    }
+
+    @Override
+    public Object loadSaleList() throws IOException {
+        return Main.loadData(salesFile.toString(), Sale::fromCSV);
+    }
+
+    @Override
+    public Object loadProducts() throws IOException {
+        return Main.loadData(productsFile.toString(), Product::fromCSV);
+    }
+
+    @Override
+    public Object loadCustomers() throws IOException {
+        return Main.loadData(customersFile.toString(), Customer::fromCSV);
+    }
+
+    @Override
+    public Object loadSalesTable() throws IOException {
+        return SalesTable.load(salesFile, offHeap);
+    }
+
+    @Override
+    public Object createSales() {
+        return newSales();
+    }
+
+    @Override
+    public Object createSalesFromList() {
+        return new Sales(saleList, products, customers);
+    }
+
+    @Override
+    public Object computeAggregates() {
+        return newSales().getAggregates();
+    }
+
+    @Override
+    public Object buildCustomerSpendIndex() {
+        Sales fresh = new Sales(table, products, customers, sales.getAggregates());
+        return fresh.getCustomerSpendIndex();
+    }
+
+    @Override
+    public Object buildTimeIndex() {
+        return newSales().getTimeIndex();
+    }
+
+    @Override
+    public Object getSales() {
+        return sales.getSales();
+    }
+
+    @Override
+    public Object getTotalSalesAmount() {
+        return sales.getTotalSalesAmount();
+    }
+
+    @Override
+    public Object getTotalSalesMinor() {
+        return sales.getTotalSalesMinor();
+    }
+
+    @Override
+    public Object getTopProducts(int k, boolean byRevenue) {
+        return sales.getTopProducts(k, byRevenue ? ProductRanking.RankBy.REVENUE : ProductRanking.RankBy.COUNT);
+    }
+
+    @Override
+    public Object getUnpopularProducts(int k, boolean byRevenue) {
+        return sales.getUnpopularProducts(k, byRevenue ? ProductRanking.RankBy.REVENUE : ProductRanking.RankBy.COUNT);
+    }
+
+    @Override
+    public Object getCustomerSpending() {
+        return sales.getCustomerSpending();
+    }
+
+    @Override
+    public Object getCustomerSpendingMinor() {
+        return sales.getCustomerSpendingMinor();
+    }
+
+    @Override
+    public Object getCustomerSpendingMinor(int customerId) {
+        return sales.getCustomerSpendingMinor(customerId);
+    }
+
+    @Override
+    public Object getCustomerPurchaseCount() {
+        return sales.getCustomerPurchaseCount();
+    }
+
+    @Override
+    public Object getCustomerPurchaseCount(int customerId) {
+        return sales.getCustomerPurchaseCount(customerId);
+    }
+
+    @Override
+    public Object getTopCustomers(double threshold) {
+        return sales.getTopCustomers(threshold);
+    }
+
+    @Override
+    public Object getTopCustomersBySpend(int offset, int limit) {
+        return sales.getTopCustomersBySpend(offset, limit);
+    }
+
+    @Override
+    public Object getSalesTrends(String granularity) {
+        return sales.getSalesTrends(TimeIndex.Granularity.valueOf(granularity));
+    }
+
+    @Override
+    public Object getSalesTrendsInRange(String granularity, int days) {
+        LocalDateTime from = sales.getTimeIndex().first();
+        return sales.getSalesTrends(from, from.plusDays(days), TimeIndex.Granularity.valueOf(granularity));
+    }
+
+    @Override
+    public Object getMonthlySalesTrends() {
+        return sales.getMonthlySalesTrends();
+    }
+
+    @Override
+    public Object getProductSalesCount() {
+        return sales.getProductSalesCount();
+    }
+
+    @Override
+    public Object getProductById(int productId) {
+        return sales.getProductById(productId);
+    }
+
+    @Override
+    public Object getCustomerById(int customerId) {
+        return sales.getCustomerById(customerId);
+    }
+
+    @Override
+    public void prepareAppendTarget() {
+        // Копия таблицы, чтобы добавление не меняло общий набор данных; агрегаты и индексы уже построены.
+        SalesTable copy = new SalesTable(table.size(), false);
+        copy.appendAll(table);
+        appendTarget = new Sales(copy, products, customers);
+        appendTarget.getCustomerSpendIndex();
+        appendTarget.getTimeIndex();
+    }
+
+    @Override
+    public void prepareDelta(int rows) {
+        // Продажи позже последней добавленной, чтобы индекс по времени дописывался, а не перестраивался.
+        SalesTable target = appendTarget.getSalesTable();
+        int size = target.size();
+        long last = size == 0 ? 0 : target.epochSecond(size - 1);
+        delta = new SalesTable(rows, false);
+        for (int row = 0; row < rows; row++) {
+            int source = row % Math.max(1, table.size());
+            delta.append(size + row + 1, last + row, table.customerId(source), table.productId(source));
+        }
+    }
+
+    @Override
+    public Object appendSales() {
+        appendTarget.appendSales(delta);
+        return appendTarget;
+    }
+
+    @Override
+    public int productCount() {
+        return products.size();
+    }
+
+    @Override
+    public int customerCount() {
+        return customers.size();
+    }
+}
@@ -0,0 +1,30 @@
+package sales.bench;
+
+import java.util.concurrent.TimeUnit; // Единицы результатов.
+import org.openjdk.jmh.annotations.*; // Аннотации JMH.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AppendBenchmark { // Применение приращения продаж к Sales с построенными агрегатами и индексами.
+    @Param({"1000"})
+    public int rows; // Продаж в одном приращении.
+
+    @Setup(Level.Iteration)
+    public void prepareTarget(Dataset data) {
+        data.workload.prepareAppendTarget();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareDelta(Dataset data) {
+        data.workload.prepareDelta(rows);
+    }
+
+    @Benchmark
+    public Object appendSales(Dataset data) {
+        return data.workload.appendSales();
+    }
+}
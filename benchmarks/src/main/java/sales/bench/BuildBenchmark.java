@@ -0,0 +1,36 @@
+package sales.bench;
+
+import java.util.concurrent.TimeUnit; // Единицы результатов.
+import org.openjdk.jmh.annotations.*; // Аннотации JMH.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark { // Построение Sales, агрегатов и индексов с нуля (холодные кэши).
+    @Benchmark
+    public Object createSales(Dataset data) {
+        return data.workload.createSales();
+    }
+
+    @Benchmark
+    public Object createSalesFromList(Dataset data) {
+        return data.workload.createSalesFromList();
+    }
+
+    @Benchmark
+    public Object computeAggregates(Dataset data) {
+        return data.workload.computeAggregates();
+    }
+
+    @Benchmark
+    public Object buildCustomerSpendIndex(Dataset data) {
+        return data.workload.buildCustomerSpendIndex();
+    }
+
+    @Benchmark
+    public Object buildTimeIndex(Dataset data) {
+        return data.workload.buildTimeIndex();
+    }
+}
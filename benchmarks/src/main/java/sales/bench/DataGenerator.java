@@ -0,0 +1,185 @@
+package sales.bench;
+
+import java.io.BufferedWriter; // Буферизованная запись CSV.
+import java.io.IOException; // Ошибки записи файлов.
+import java.nio.charset.StandardCharsets; // CSV в UTF-8, как и исходные данные.
+import java.nio.file.*; // Каталоги и файлы набора данных.
+import java.time.LocalDate; // Дата продажи.
+import java.time.LocalDateTime; // Начало периода продаж.
+import java.time.ZoneOffset; // Время продаж хранится в UTC.
+import java.util.Arrays; // Бинарный поиск по функции распределения.
+import java.util.SplittableRandom; // Детерминированный генератор случайных чисел.
+
+public final class DataGenerator { // Детерминированный генератор products.csv, customers.csv и sales.csv заданного масштаба.
+    public static final long DEFAULT_SEED = 42;
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0); // Начало периода продаж.
+    private static final long PERIOD_SECONDS = 2L * 365 * 24 * 3600; // Продажи распределены по двум годам.
+    private static final String COMPLETE_MARKER = ".complete"; // Признак полностью записанного набора.
+
+    private final long sales; // Число продаж.
+    private final int products; // Число продуктов.
+    private final int customers; // Число покупателей.
+    private final double productSkew; // Показатель Ципфа для популярности продуктов.
+    private final double customerSkew; // Показатель Ципфа для активности покупателей.
+    private final long seed;
+
+    public DataGenerator(long sales, int products, int customers, double productSkew, double customerSkew, long seed) {
+        if (sales < 1 || sales > Integer.MAX_VALUE || products < 1 || customers < 1) {
+            throw new IllegalArgumentException("Некорректный масштаб: продаж " + sales + ", продуктов " + products
+                    + ", покупателей " + customers);
+        }
+        this.sales = sales;
+        this.products = products;
+        this.customers = customers;
+        this.productSkew = productSkew;
+        this.customerSkew = customerSkew;
+        this.seed = seed;
+    }
+
+    public static DataGenerator forScale(long sales) {
+        // Размеры справочников растут вместе с числом продаж: 1 продукт на 1000 продаж и 1 покупатель на 100.
+        int products = (int) Math.max(100, Math.min(100_000, sales / 1000));
+        int customers = (int) Math.max(100, Math.min(1_000_000, sales / 100));
+        return new DataGenerator(sales, products, customers, 1.1, 0.8, DEFAULT_SEED);
+    }
+
+    public static Path prepare(Path root, long sales) throws IOException {
+        // Каталог с набором данных заданного масштаба; уже сгенерированный набор используется повторно.
+        Path directory = root.resolve("sales-" + sales);
+        if (!Files.exists(directory.resolve(COMPLETE_MARKER))) {
+            forScale(sales).generate(directory);
+        }
+        return directory;
+    }
+
+    public void generate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(COMPLETE_MARKER));
+        SplittableRandom random = new SplittableRandom(seed);
+        writeProducts(directory.resolve("products.csv"), random.split());
+        writeCustomers(directory.resolve("customers.csv"));
+        writeSales(directory.resolve("sales.csv"), random.split());
+        Files.createFile(directory.resolve(COMPLETE_MARKER));
+    }
+
+    private void writeProducts(Path path, SplittableRandom random) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("productId,productName,price\n");
+            for (int id = 1; id <= products; id++) {
+                // Цены распределены логарифмически равномерно от 1 до 100 000 рублей.
+                long priceMinor = Math.round(Math.pow(10, 2 + random.nextDouble() * 5));
+                out.write(id + ",Товар " + id + "," + priceMinor / 100 + "." + (priceMinor % 100 < 10 ? "0" : "")
+                        + priceMinor % 100 + "\n");
+            }
+        }
+    }
+
+    private void writeCustomers(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("customerId,customerName\n");
+            for (int id = 1; id <= customers; id++) {
+                out.write(id + ",Покупатель " + id + "\n");
+            }
+        }
+    }
+
+    private void writeSales(Path path, SplittableRandom random) throws IOException {
+        // Продукты и покупатели выбираются по закону Ципфа; самые популярные ID перемешаны,
+        // чтобы популярность не совпадала с порядком справочника. Время продаж возрастает.
+        Zipf productPopularity = new Zipf(products, productSkew);
+        Zipf customerActivity = new Zipf(customers, customerSkew);
+        int[] productIds = shuffledIds(products, random.split());
+        int[] customerIds = shuffledIds(customers, random.split());
+        long startEpoch = START.toEpochSecond(ZoneOffset.UTC);
+        long lastDay = Long.MIN_VALUE;
+        String datePrefix = "";
+        StringBuilder line = new StringBuilder(64);
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("saleId,saleDateTime,customerId,productId\n");
+            for (long i = 0; i < sales; i++) {
+                long epoch = startEpoch + (long) ((double) i * PERIOD_SECONDS / sales);
+                long day = Math.floorDiv(epoch, 86400);
+                if (day != lastDay) { // Дата форматируется один раз в сутки, время - вручную.
+                    lastDay = day;
+                    datePrefix = LocalDate.ofEpochDay(day) + "T";
+                }
+                int secondOfDay = Math.floorMod(epoch, 86400);
+                line.setLength(0);
+                line.append(i + 1).append(',').append(datePrefix);
+                appendTwoDigits(line, secondOfDay / 3600).append(':');
+                appendTwoDigits(line, secondOfDay / 60 % 60).append(':');
+                appendTwoDigits(line, secondOfDay % 60).append(',');
+                line.append(customerIds[customerActivity.sample(random)]).append(',');
+                line.append(productIds[productPopularity.sample(random)]).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder line, int value) {
+        return line.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static int[] shuffledIds(int count, SplittableRandom random) {
+        // Перестановка Фишера-Йетса: ранг популярности -> ID.
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    private static final class Zipf { // Выборка рангов по закону Ципфа через функцию распределения.
+        private final double[] cdf;
+
+        Zipf(int count, double skew) {
+            cdf = new double[count];
+            double sum = 0;
+            for (int rank = 0; rank < count; rank++) {
+                sum += 1 / Math.pow(rank + 1, skew);
+                cdf[rank] = sum;
+            }
+            for (int rank = 0; rank < count; rank++) {
+                cdf[rank] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Аргументы: --sales=N (1000 .. 100000000), --out=каталог, а также необязательные
+        // --products=N, --customers=N, --product-skew=S, --customer-skew=S, --seed=N.
+        DataGenerator defaults = forScale(Long.parseLong(option(args, "sales", "100000")));
+        DataGenerator generator = new DataGenerator(defaults.sales,
+                Integer.parseInt(option(args, "products", String.valueOf(defaults.products))),
+                Integer.parseInt(option(args, "customers", String.valueOf(defaults.customers))),
+                Double.parseDouble(option(args, "product-skew", String.valueOf(defaults.productSkew))),
+                Double.parseDouble(option(args, "customer-skew", String.valueOf(defaults.customerSkew))),
+                Long.parseLong(option(args, "seed", String.valueOf(DEFAULT_SEED))));
+        Path directory = Paths.get(option(args, "out", "sales-" + generator.sales));
+        long started = System.nanoTime();
+        generator.generate(directory);
+        System.out.printf("Набор данных в %s: продаж %d, продуктов %d, покупателей %d, %.1f с%n",
+                directory.toAbsolutePath().normalize(), generator.sales, generator.products, generator.customers,
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith("--" + name + "=")) {
+                return arg.substring(name.length() + 3);
+            }
+        }
+        return defaultValue;
+    }
+}
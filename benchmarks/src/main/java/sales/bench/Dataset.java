@@ -0,0 +1,29 @@
+package sales.bench;
+
+import java.io.IOException; // Ошибки генерации и загрузки данных.
+import java.nio.file.*; // Каталог наборов данных.
+import org.openjdk.jmh.annotations.*; // Аннотации JMH.
+
+@State(Scope.Benchmark)
+public class Dataset { // Общий загруженный набор данных; масштаб задается параметром -p sales=N.
+    @Param({"100000"})
+    public long sales; // Число продаж (от 10^3 до 10^8).
+
+    @Param({"false"})
+    public boolean offHeap; // Колонки продаж вне кучи.
+
+    @Param({"1"})
+    public int threads; // Число потоков агрегации.
+
+    Workload workload;
+    Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Наборы данных кэшируются в каталоге sales.bench.data и генерируются только при первом запуске.
+        Path root = Paths.get(System.getProperty("sales.bench.data", "build/bench-data"));
+        directory = DataGenerator.prepare(root, sales);
+        workload = Workload.create();
+        workload.setUp(directory, offHeap, threads);
+    }
+}
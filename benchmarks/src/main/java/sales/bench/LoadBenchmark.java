@@ -0,0 +1,32 @@
+package sales.bench;
+
+import java.io.IOException; // Ошибки чтения CSV.
+import java.util.concurrent.TimeUnit; // Единицы результатов.
+import org.openjdk.jmh.annotations.*; // Аннотации JMH.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark { // Загрузка CSV через Main.loadData и колоночную таблицу.
+    @Benchmark
+    public Object loadSaleList(Dataset data) throws IOException {
+        return data.workload.loadSaleList();
+    }
+
+    @Benchmark
+    public Object loadProducts(Dataset data) throws IOException {
+        return data.workload.loadProducts();
+    }
+
+    @Benchmark
+    public Object loadCustomers(Dataset data) throws IOException {
+        return data.workload.loadCustomers();
+    }
+
+    @Benchmark
+    public Object loadSalesTable(Dataset data) throws IOException {
+        return data.workload.loadSalesTable();
+    }
+}
@@ -0,0 +1,125 @@
+package sales.bench;
+
+import java.util.concurrent.TimeUnit; // Единицы результатов.
+import org.openjdk.jmh.annotations.*; // Аннотации JMH.
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark { // Публичные запросы Sales по загруженному набору с построенными кэшами.
+    @Param({"5"})
+    public int k; // Размер рейтингов продуктов.
+
+    @Param({"10000"})
+    public double threshold; // Порог затрат покупателей в рублях.
+
+    private int next; // Счетчик для перебора ID в точечных запросах.
+
+    private int nextId(int count) {
+        next = next * 1103515245 + 12345; // Псевдослучайный ID без выделения памяти.
+        return (next >>> 1) % count + 1;
+    }
+
+    @Benchmark
+    public Object getSales(Dataset data) {
+        return data.workload.getSales();
+    }
+
+    @Benchmark
+    public Object getTotalSalesAmount(Dataset data) {
+        return data.workload.getTotalSalesAmount();
+    }
+
+    @Benchmark
+    public Object getTotalSalesMinor(Dataset data) {
+        return data.workload.getTotalSalesMinor();
+    }
+
+    @Benchmark
+    public Object getTopProducts(Dataset data) {
+        return data.workload.getTopProducts(k, false);
+    }
+
+    @Benchmark
+    public Object getTopProductsByRevenue(Dataset data) {
+        return data.workload.getTopProducts(k, true);
+    }
+
+    @Benchmark
+    public Object getUnpopularProducts(Dataset data) {
+        return data.workload.getUnpopularProducts(k, false);
+    }
+
+    @Benchmark
+    public Object getUnpopularProductsByRevenue(Dataset data) {
+        return data.workload.getUnpopularProducts(k, true);
+    }
+
+    @Benchmark
+    public Object getCustomerSpending(Dataset data) {
+        return data.workload.getCustomerSpending();
+    }
+
+    @Benchmark
+    public Object getCustomerSpendingMinor(Dataset data) {
+        return data.workload.getCustomerSpendingMinor();
+    }
+
+    @Benchmark
+    public Object getCustomerSpendingMinorById(Dataset data) {
+        return data.workload.getCustomerSpendingMinor(nextId(data.workload.customerCount()));
+    }
+
+    @Benchmark
+    public Object getCustomerPurchaseCount(Dataset data) {
+        return data.workload.getCustomerPurchaseCount();
+    }
+
+    @Benchmark
+    public Object getCustomerPurchaseCountById(Dataset data) {
+        return data.workload.getCustomerPurchaseCount(nextId(data.workload.customerCount()));
+    }
+
+    @Benchmark
+    public Object getTopCustomers(Dataset data) {
+        return data.workload.getTopCustomers(threshold);
+    }
+
+    @Benchmark
+    public Object getTopCustomersBySpend(Dataset data) {
+        return data.workload.getTopCustomersBySpend(0, 100);
+    }
+
+    @Benchmark
+    public Object getSalesTrendsDaily(Dataset data) {
+        return data.workload.getSalesTrends("DAY");
+    }
+
+    @Benchmark
+    public Object getSalesTrendsHourlyInRange(Dataset data) {
+        return data.workload.getSalesTrendsInRange("HOUR", 7);
+    }
+
+    @Benchmark
+    public Object getMonthlySalesTrends(Dataset data) {
+        return data.workload.getMonthlySalesTrends();
+    }
+
+    @Benchmark
+    public Object getProductSalesCount(Dataset data) {
+        return data.workload.getProductSalesCount();
+    }
+
+    @Benchmark
+    public Object getProductById(Dataset data) {
+        return data.workload.getProductById(nextId(data.workload.productCount()));
+    }
+
+    @Benchmark
+    public Object getCustomerById(Dataset data) {
+        return data.workload.getCustomerById(nextId(data.workload.customerCount()));
+    }
+}
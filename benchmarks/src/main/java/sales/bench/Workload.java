@@ -0,0 +1,88 @@
+package sales.bench;
+
+import java.io.IOException; // Ошибки загрузки CSV.
+import java.nio.file.Path; // Каталог набора данных.
+
+// Операции приложения, доступные бенчмаркам. Классы приложения лежат в пакете по умолчанию,
+// а JMH не допускает бенчмарков в нем, поэтому вызовы идут через этот интерфейс,
+// реализованный классом SalesWorkload в пакете по умолчанию.
+public interface Workload {
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("SalesWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Класс SalesWorkload не найден", e);
+        }
+    }
+
+    // Загрузка набора данных; запросы ниже выполняются по загруженному экземпляру Sales.
+    void setUp(Path directory, boolean offHeap, int parallelism) throws IOException;
+
+    // Загрузка CSV.
+    Object loadSaleList() throws IOException; // Main.loadData(sales.csv, Sale::fromCSV).
+
+    Object loadProducts() throws IOException; // Main.loadData(products.csv, Product::fromCSV).
+
+    Object loadCustomers() throws IOException; // Main.loadData(customers.csv, Customer::fromCSV).
+
+    Object loadSalesTable() throws IOException; // SalesTable.load(sales.csv).
+
+    // Построение Sales и кэшей с нуля.
+    Object createSales(); // new Sales(table, products, customers): индексы и проверка ссылок.
+
+    Object createSalesFromList(); // new Sales(List<Sale>, ...).
+
+    Object computeAggregates(); // getAggregates() нового экземпляра.
+
+    Object buildCustomerSpendIndex(); // getCustomerSpendIndex() нового экземпляра с готовыми агрегатами.
+
+    Object buildTimeIndex(); // getTimeIndex() нового экземпляра.
+
+    // Запросы к загруженному экземпляру.
+    Object getSales();
+
+    Object getTotalSalesAmount();
+
+    Object getTotalSalesMinor();
+
+    Object getTopProducts(int k, boolean byRevenue);
+
+    Object getUnpopularProducts(int k, boolean byRevenue);
+
+    Object getCustomerSpending();
+
+    Object getCustomerSpendingMinor();
+
+    Object getCustomerSpendingMinor(int customerId);
+
+    Object getCustomerPurchaseCount();
+
+    Object getCustomerPurchaseCount(int customerId);
+
+    Object getTopCustomers(double threshold);
+
+    Object getTopCustomersBySpend(int offset, int limit);
+
+    Object getSalesTrends(String granularity);
+
+    Object getSalesTrendsInRange(String granularity, int days);
+
+    Object getMonthlySalesTrends();
+
+    Object getProductSalesCount();
+
+    Object getProductById(int productId);
+
+    Object getCustomerById(int customerId);
+
+    // Добавление продаж (режим слежения).
+    void prepareAppendTarget(); // Свежий экземпляр с построенными агрегатами и индексами.
+
+    void prepareDelta(int rows); // Приращение заданного размера позже уже добавленных продаж.
+
+    Object appendSales();
+
+    int productCount();
+
+    int customerCount();
+}
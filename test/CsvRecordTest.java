@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.*; // Эталонный разбор дат.
+import java.time.format.DateTimeFormatter; // Формат поля saleDateTime в sales.csv.
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordTest { // Быстрый разбор даты продажи совпадает с LocalDateTime.
+    private static final DateTimeFormatter SALE_TIME = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+
+    @Test
+    void epochDayMatchesLocalDate() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.getYear() < 2101; date = date.plusDays(1)) {
+            assertEquals(date.toEpochDay(), CsvRecord.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()),
+                    date.toString());
+        }
+    }
+
+    @Test
+    void epochSecondMatchesLocalDateTime() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(random.nextInt(Integer.MAX_VALUE) * 2L - Integer.MAX_VALUE, 0, ZoneOffset.UTC);
+            CsvRecord record = CsvRecord.of(i + "," + SALE_TIME.format(time) + ",7");
+            assertEquals(i, record.nextInt());
+            assertEquals(time.toEpochSecond(ZoneOffset.UTC), record.nextEpochSecond(), time.toString());
+            assertEquals(7, record.nextInt()); // Курсор стоит на следующем поле.
+        }
+    }
+
+    @Test
+    void fastPathAgreesWithDateTimeParser() {
+        String[] fields = {"2024-02-29T23:59:59", " 2024-11-01T00:00:00 ", "1999-12-31t12:30:45"};
+        for (String field : fields) {
+            LocalDateTime expected = CsvRecord.of(field).nextDateTime();
+            assertEquals(SalesTable.toEpochSecond(expected), CsvRecord.of(field).nextEpochSecond(), field);
+        }
+        assertEquals(LocalDateTime.of(2024, 2, 29, 23, 59, 59), CsvRecord.of("2024-02-29T23:59:59").nextDateTime());
+    }
+
+    @Test
+    void otherIsoLayoutsUseStandardParser() {
+        // Доли секунды и время без секунд разбирает DateTimeFormatter; доли отбрасываются.
+        assertEquals(SalesTable.toEpochSecond(LocalDateTime.of(2024, 3, 1, 10, 15, 30)),
+                CsvRecord.of("2024-03-01T10:15:30.750").nextEpochSecond());
+        assertEquals(SalesTable.toEpochSecond(LocalDateTime.of(2024, 3, 1, 10, 15)),
+                CsvRecord.of("2024-03-01T10:15").nextEpochSecond());
+    }
+
+    @Test
+    void invalidDatesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("2023-02-29T00:00:00").nextEpochSecond());
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("2023-13-01T00:00:00").nextEpochSecond());
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("2023-01-01T24:00:00").nextEpochSecond());
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("2023-01-0xT00:00:00").nextEpochSecond());
+        // Ошибки даты на обоих путях разбора - IllegalArgumentException, как у остальных полей.
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("01.01.2023 00:00").nextEpochSecond());
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("2023-02-29T00:00:00").nextDateTime());
+        assertThrows(IllegalArgumentException.class, () -> CsvRecord.of("2023-02-29T00:00").nextDateTime());
+    }
+}
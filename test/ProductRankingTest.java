@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // Коллекции List, Arrays.
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductRankingTest { // Рейтинг продуктов: порядок по показателю, при равенстве - по возрастанию ID.
+    // Справочник нарочно не по порядку ID: 30 и 10 продаются одинаково, 40 без продаж.
+    private static final List<Product> PRODUCTS = Arrays.asList(
+            Product.ofMinorUnits(30, "Товар 30", 100),
+            Product.ofMinorUnits(20, "Товар 20", 500),
+            Product.ofMinorUnits(10, "Товар 10", 100),
+            Product.ofMinorUnits(40, "Товар 40", 900),
+            Product.ofMinorUnits(50, "Товар 50", 300));
+    private static final List<Customer> CUSTOMERS = Arrays.asList(new Customer(1, "Покупатель 1"));
+
+    private static SalesAggregates aggregates(int... productIds) {
+        SalesTable sales = new SalesTable(false);
+        for (int i = 0; i < productIds.length; i++) {
+            sales.append(i + 1, 0, 1, productIds[i]);
+        }
+        return SalesAggregates.compute(sales, TestData.productIndex(PRODUCTS), TestData.customerIndex(CUSTOMERS));
+    }
+
+    private static List<Integer> ids(List<Product> products) {
+        List<Integer> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getProductId());
+        }
+        return ids;
+    }
+
+    @Test
+    void topBreaksTiesByAscendingId() {
+        // Продажи: 30 x2, 10 x2, 20 x1, 50 x1.
+        SalesAggregates stats = aggregates(30, 10, 20, 30, 50, 10);
+        CatalogIndex<Product> index = TestData.productIndex(PRODUCTS);
+        assertEquals(Arrays.asList(10, 30, 20, 50), ids(ProductRanking.top(stats, index, 5, ProductRanking.RankBy.COUNT)));
+        assertEquals(Arrays.asList(10, 30, 20), ids(ProductRanking.top(stats, index, 3, ProductRanking.RankBy.COUNT)));
+        assertEquals(Arrays.asList(10), ids(ProductRanking.top(stats, index, 1, ProductRanking.RankBy.COUNT)));
+        assertEquals(Collections.emptyList(), ProductRanking.top(stats, index, 0, ProductRanking.RankBy.COUNT));
+    }
+
+    @Test
+    void topByRevenue() {
+        // Выручка: 20 - 500, 50 - 300, 10 и 30 - по 200.
+        SalesAggregates stats = aggregates(30, 10, 20, 30, 50, 10);
+        CatalogIndex<Product> index = TestData.productIndex(PRODUCTS);
+        assertEquals(Arrays.asList(20, 50, 10, 30), ids(ProductRanking.top(stats, index, 4, ProductRanking.RankBy.REVENUE)));
+    }
+
+    @Test
+    void bottomIncludesUnsoldAndBreaksTiesByAscendingId() {
+        SalesAggregates stats = aggregates(30, 10, 20, 30, 50, 10);
+        CatalogIndex<Product> index = TestData.productIndex(PRODUCTS);
+        assertEquals(Arrays.asList(40, 20, 50, 10, 30), ids(ProductRanking.bottom(stats, index, 5, ProductRanking.RankBy.COUNT)));
+        assertEquals(Arrays.asList(40, 20), ids(ProductRanking.bottom(stats, index, 2, ProductRanking.RankBy.COUNT)));
+    }
+
+    @Test
+    void matchesFullSort() {
+        Random random = new Random(4);
+        List<Product> products = TestData.products(2000, random);
+        List<Customer> customers = TestData.customers(100);
+        CatalogIndex<Product> index = TestData.productIndex(products);
+        // Мало продаж на много продуктов: много равных счетчиков.
+        SalesAggregates stats = SalesAggregates.compute(TestData.sales(5000, products, customers, random), index,
+                TestData.customerIndex(customers));
+        List<Product> expected = new ArrayList<>(products);
+        expected.removeIf(product -> stats.productCount(index.requireOrdinal(product.getProductId())) == 0);
+        expected.sort(Comparator.<Product>comparingLong(product -> -stats.productCount(index.requireOrdinal(product.getProductId())))
+                .thenComparingInt(Product::getProductId));
+        assertEquals(ids(expected.subList(0, 100)), ids(ProductRanking.top(stats, index, 100, ProductRanking.RankBy.COUNT)));
+        assertEquals(ids(expected), ids(ProductRanking.top(stats, index, products.size(), ProductRanking.RankBy.COUNT)));
+    }
+
+    @Test
+    void negativeKIsRejected() {
+        SalesAggregates stats = aggregates(10);
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductRanking.top(stats, TestData.productIndex(PRODUCTS), -1, ProductRanking.RankBy.COUNT));
+    }
+}
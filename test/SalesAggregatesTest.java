@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.*; // Коллекции List, Random.
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesAggregatesTest { // Параллельная агрегация совпадает с последовательной и с наивным подсчетом.
+    private static final int ROWS = 300_000; // Несколько листьев даже при одном потоке на лист.
+
+    @Test
+    void parallelMatchesSequential() {
+        Random random = new Random(2);
+        List<Product> products = TestData.products(500, random);
+        List<Customer> customers = TestData.customers(3000);
+        SalesTable sales = TestData.sales(ROWS, products, customers, random);
+        CatalogIndex<Product> productIndex = TestData.productIndex(products);
+        CatalogIndex<Customer> customerIndex = TestData.customerIndex(customers);
+
+        SalesAggregates sequential = SalesAggregates.compute(sales, productIndex, customerIndex, 1);
+        for (int parallelism : new int[]{2, 3, 8}) {
+            SalesAggregates parallel = SalesAggregates.compute(sales, productIndex, customerIndex, parallelism);
+            assertEquals(sequential.getSalesCount(), parallel.getSalesCount());
+            assertEquals(sequential.getTotalRevenue(), parallel.getTotalRevenue());
+            for (int p = 0; p < products.size(); p++) {
+                assertEquals(sequential.productCount(p), parallel.productCount(p));
+                assertEquals(sequential.productRevenue(p), parallel.productRevenue(p));
+            }
+            for (int c = 0; c < customers.size(); c++) {
+                assertEquals(sequential.customerCount(c), parallel.customerCount(c));
+                assertEquals(sequential.customerSpend(c), parallel.customerSpend(c));
+            }
+        }
+    }
+
+    @Test
+    void sequentialMatchesNaiveSums() {
+        Random random = new Random(3);
+        List<Product> products = TestData.products(50, random);
+        List<Customer> customers = TestData.customers(200);
+        SalesTable sales = TestData.sales(10_000, products, customers, random);
+        CatalogIndex<Product> productIndex = TestData.productIndex(products);
+        CatalogIndex<Customer> customerIndex = TestData.customerIndex(customers);
+
+        long[] productCount = new long[products.size()];
+        long[] customerSpend = new long[customers.size()];
+        long total = 0;
+        for (int row = 0; row < sales.size(); row++) {
+            Product product = productIndex.get(sales.productId(row));
+            productCount[productIndex.requireOrdinal(sales.productId(row))]++;
+            customerSpend[customerIndex.requireOrdinal(sales.customerId(row))] += product.getPriceMinor();
+            total += product.getPriceMinor();
+        }
+        SalesAggregates stats = SalesAggregates.compute(sales, productIndex, customerIndex);
+        assertEquals(sales.size(), stats.getSalesCount());
+        assertEquals(total, stats.getTotalRevenue());
+        for (int p = 0; p < products.size(); p++) {
+            assertEquals(productCount[p], stats.productCount(p));
+        }
+        for (int c = 0; c < customers.size(); c++) {
+            assertEquals(customerSpend[c], stats.customerSpend(c));
+        }
+    }
+}
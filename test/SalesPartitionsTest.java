@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*; // Временные sales.csv и каталог партиций.
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter; // Формат поля saleDateTime в sales.csv.
+import java.util.*; // Коллекции List, Random.
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesPartitionsTest { // Запросы к каталогу партиций совпадают с запросами к той же таблице целиком.
+    private static final DateTimeFormatter SALE_TIME = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+
+    private final Random random = new Random(13);
+    private final List<Product> products = TestData.products(100, random);
+    private final List<Customer> customers = TestData.customers(500);
+    private final SalesTable sales = TestData.sales(30_000, products, customers, random);
+
+    private Path split(Path directory) throws IOException {
+        Path file = directory.resolve("sales.csv");
+        StringBuilder csv = new StringBuilder("saleId,saleDateTime,customerId,productId\n");
+        for (int row = 0; row < sales.size(); row++) {
+            csv.append(sales.saleId(row)).append(',').append(SALE_TIME.format(sales.dateTime(row))).append(',').append(sales.customerId(row)).append(',').append(sales.productId(row)).append('\n');
+        }
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        Path parts = directory.resolve("parts");
+        assertEquals(24, SalesPartitions.split(file, parts));
+        return parts;
+    }
+
+    private static void assertSameBuckets(List<TimeIndex.Bucket> expected, List<TimeIndex.Bucket> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+            assertEquals(expected.get(i).getCount(), actual.get(i).getCount(), expected.get(i).getStart().toString());
+            assertEquals(expected.get(i).getRevenueMinor(), actual.get(i).getRevenueMinor(), expected.get(i).getStart().toString());
+        }
+    }
+
+    @Test
+    void aggregatesAndTrendsMatchWholeTable(@TempDir Path directory) throws IOException {
+        Path parts = split(directory);
+        Sales whole = new Sales(sales, products, customers);
+        for (int run = 0; run < 2; run++) { // Второй запуск читает манифест и кэш агрегатов.
+            Sales partitioned = Sales.partitioned(parts, products, customers);
+            assertEquals(whole.getSalesCount(), partitioned.getSalesCount());
+            assertEquals(whole.getTotalSalesMinor(), partitioned.getTotalSalesMinor());
+            assertEquals(whole.getCustomerSpendingMinor(), partitioned.getCustomerSpendingMinor());
+            assertEquals(whole.getMonthlySalesTrendsMinor(), partitioned.getMonthlySalesTrendsMinor());
+            assertEquals(whole.getFirstSaleTime(), partitioned.getFirstSaleTime());
+            assertEquals(whole.getLastSaleTime(), partitioned.getLastSaleTime());
+            assertEquals(0, partitioned.getSalesTable().size()); // Агрегаты и тенденции по месяцам - без чтения строк.
+            assertEquals(sales.size(), partitioned.getDatasetRows()); // Размер набора данных - по манифесту.
+        }
+        Sales partitioned = Sales.partitioned(parts, products, customers);
+        LocalDateTime from = LocalDateTime.of(2023, 6, 17, 9, 30);
+        LocalDateTime to = LocalDateTime.of(2023, 9, 2, 0, 0);
+        for (TimeIndex.Granularity granularity : TimeIndex.Granularity.values()) {
+            if (granularity != TimeIndex.Granularity.HOUR) {
+                assertSameBuckets(whole.getSalesTrends(granularity), partitioned.getSalesTrends(granularity));
+            }
+            assertSameBuckets(whole.getSalesTrends(from, to, granularity), partitioned.getSalesTrends(from, to, granularity));
+        }
+        assertEquals(0, partitioned.getSalesTable().size());
+        // Запросы по отдельным продажам загружают строки всех партиций.
+        assertEquals(whole.getBoughtTogether(products.get(0).getProductId(), 5).size(),
+                partitioned.getBoughtTogether(products.get(0).getProductId(), 5).size());
+        assertEquals(sales.size(), partitioned.getSalesTable().size());
+    }
+}
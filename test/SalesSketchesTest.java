@@ -0,0 +1,186 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*; // Временный sales.csv для потоковой загрузки.
+import java.time.format.DateTimeFormatter; // Формат поля saleDateTime в sales.csv.
+import java.util.*; // Коллекции List, Set, Random.
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesSketchesTest { // Оценки эскизов укладываются в заявленные границы ошибки.
+    private static final int ROWS = 200_000;
+    private static final DateTimeFormatter SALE_TIME = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+
+    @Test
+    void countMinStaysWithinEpsilon() {
+        Random random = new Random(6);
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01, 16);
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int i = 0; i < ROWS; i++) {
+            int key = (int) (10_000 * Math.pow(random.nextDouble(), 3));
+            long weight = 1 + random.nextInt(100);
+            sketch.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+        }
+        long bound = (long) Math.ceil(0.001 * sketch.total());
+        int violations = 0;
+        for (Map.Entry<Integer, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), "Оценка Count-Min не может быть меньше истинного веса");
+            if (estimate - entry.getValue() > bound) {
+                violations++;
+            }
+        }
+        assertTrue(violations <= 0.01 * exact.size(), "Превышений epsilon: " + violations + " из " + exact.size());
+        // Самые частые ключи - самые маленькие из-за степенного распределения.
+        assertEquals(0, sketch.top(1)[0]);
+    }
+
+    @Test
+    void hyperLogLogStaysWithinRelativeError() {
+        Random random = new Random(7);
+        for (int distinct : new int[]{10, 1_000, 50_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog(HyperLogLog.precisionFor(0.01));
+            HyperLogLog half = new HyperLogLog(HyperLogLog.precisionFor(0.01));
+            long base = random.nextLong();
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(base + i);
+                sketch.add(base + i); // Повторы не увеличивают оценку.
+                if (i % 2 == 0) {
+                    half.add(base + i);
+                }
+            }
+            // Три стандартные ошибки; для малых множеств оценка практически точная.
+            assertEquals(distinct, sketch.estimate(), Math.max(1, 0.03 * distinct), "distinct " + distinct);
+            long merged = new HyperLogLog(HyperLogLog.precisionFor(0.01)).merge(half).merge(sketch).estimate();
+            assertEquals(sketch.estimate(), merged, "Слияние с подмножеством не меняет оценку");
+        }
+    }
+
+    @Test
+    void quantilesStayWithinAccuracy() {
+        Random random = new Random(8);
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        long[] values = new long[ROWS];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20); // От 1 до ~5e8, на несколько порядков.
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double q : new double[]{0, 0.01, 0.25, 0.5, 0.9, 0.99, 1}) {
+            long expected = values[(int) Math.floor(q * (values.length - 1))];
+            assertEquals(expected, sketch.quantile(q), Math.max(1, 0.01 * expected), "q = " + q);
+        }
+    }
+
+    @Test
+    void salesSketchesMatchExactAggregates() {
+        Random random = new Random(9);
+        List<Product> products = TestData.products(1000, random);
+        List<Customer> customers = TestData.customers(20_000);
+        SalesTable sales = TestData.sales(ROWS, products, customers, random);
+        CatalogIndex<Product> productIndex = TestData.productIndex(products);
+        SalesAggregates exact = SalesAggregates.compute(sales, productIndex, TestData.customerIndex(customers));
+        SalesSketches.Config config = SalesSketches.Config.DEFAULT;
+        SalesSketches sketches = SalesSketches.compute(sales, productIndex, config, 1);
+
+        assertEquals(sales.size(), sketches.getSalesCount());
+        long countBound = (long) Math.ceil(config.getEpsilon() * sales.size());
+        long revenueBound = (long) Math.ceil(config.getEpsilon() * exact.getTotalRevenue());
+        for (int p = 0; p < products.size(); p++) {
+            int id = productIndex.idAt(p);
+            assertTrue(sketches.estimateCount(id) >= exact.productCount(p));
+            assertTrue(sketches.estimateCount(id) - exact.productCount(p) <= countBound, "продукт " + id);
+            assertTrue(sketches.estimateRevenue(id) - exact.productRevenue(p) <= revenueBound, "продукт " + id);
+        }
+        // Лидер по количеству продаж - первый продукт справочника, с большим отрывом.
+        assertEquals(ProductRanking.top(exact, productIndex, 1, ProductRanking.RankBy.COUNT).get(0).getProductId(),
+                sketches.topProducts(1, ProductRanking.RankBy.COUNT)[0]);
+
+        Set<Integer> buyers = new HashSet<>();
+        for (int row = 0; row < sales.size(); row++) {
+            buyers.add(sales.customerId(row));
+        }
+        assertEquals(buyers.size(), sketches.distinctCustomers(), 0.03 * buyers.size());
+    }
+
+    @Test
+    void totalsAreExact() {
+        Random random = new Random(11);
+        List<Product> products = TestData.products(300, random);
+        List<Customer> customers = TestData.customers(1000);
+        SalesTable sales = TestData.sales(50_000, products, customers, random);
+        CatalogIndex<Product> productIndex = TestData.productIndex(products);
+        SalesSketches sketches = SalesSketches.compute(sales, productIndex, SalesSketches.Config.DEFAULT, 1);
+        assertEquals(SalesAggregates.compute(sales, productIndex, TestData.customerIndex(customers)).getTotalRevenue(),
+                sketches.getTotalRevenue());
+        TimeIndex index = TimeIndex.build(sales, productIndex);
+        List<TimeIndex.Bucket> expected = index.buckets(TestData.FROM, TestData.TO, TimeIndex.Granularity.MONTH);
+        List<TimeIndex.Bucket> actual = sketches.monthlyBuckets();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+            assertEquals(expected.get(i).getEnd(), actual.get(i).getEnd());
+            assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+            assertEquals(expected.get(i).getRevenueMinor(), actual.get(i).getRevenueMinor());
+        }
+    }
+
+    @Test
+    void streamingLoadMatchesTable(@TempDir Path directory) throws IOException {
+        Random random = new Random(12);
+        List<Product> products = TestData.products(300, random);
+        List<Customer> customers = TestData.customers(1000);
+        SalesTable sales = TestData.sales(50_000, products, customers, random);
+        Path file = directory.resolve("sales.csv");
+        StringBuilder csv = new StringBuilder("saleId,saleDateTime,customerId,productId\n");
+        for (int row = 0; row < sales.size(); row++) {
+            csv.append(sales.saleId(row)).append(',').append(SALE_TIME.format(sales.dateTime(row))).append(',').append(sales.customerId(row)).append(',').append(sales.productId(row)).append('\n');
+        }
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        CatalogIndex<Product> productIndex = TestData.productIndex(products);
+        CatalogIndex<Customer> customerIndex = TestData.customerIndex(customers);
+        SalesSketches fromTable = SalesSketches.compute(sales, productIndex, SalesSketches.Config.DEFAULT, 1);
+        SalesSketches fromFile = SalesSketches.load(file, -1, productIndex, customerIndex, SalesSketches.Config.DEFAULT, 1);
+        // Слияние эскизов фрагментов не меняет оценок: порядок строк не важен.
+        assertEquals(fromTable.getSalesCount(), fromFile.getSalesCount());
+        assertEquals(fromTable.getTotalRevenue(), fromFile.getTotalRevenue());
+        assertEquals(fromTable.distinctCustomers(), fromFile.distinctCustomers());
+        assertEquals(fromTable.distinctCustomersByMonth(), fromFile.distinctCustomersByMonth());
+        assertEquals(fromTable.monthlyBuckets().size(), fromFile.monthlyBuckets().size());
+        for (Product product : products) {
+            assertEquals(fromTable.estimateRevenue(product.getProductId()), fromFile.estimateRevenue(product.getProductId()));
+        }
+        SalesSketches parallel = SalesSketches.load(file, -1, productIndex, customerIndex, SalesSketches.Config.DEFAULT, 4);
+        assertEquals(fromFile.getTotalRevenue(), parallel.getTotalRevenue()); // Несколько фрагментов в отдельном пуле.
+        assertEquals(fromFile.distinctCustomersByMonth(), parallel.distinctCustomersByMonth());
+
+        Files.write(file, "saleId,saleDateTime,customerId,productId\n1,2024-01-01T00:00:00,1,100\n".getBytes(StandardCharsets.UTF_8));
+        for (int parallelism : new int[]{1, 4}) { // Ошибка строки доходит без обертки пула.
+            assertThrows(IllegalArgumentException.class, // Покупателя 1 нет в справочнике.
+                    () -> SalesSketches.load(file, -1, productIndex, customerIndex, SalesSketches.Config.DEFAULT, parallelism));
+        }
+    }
+
+    @Test
+    void parallelBuildMatchesSequential() {
+        Random random = new Random(10);
+        List<Product> products = TestData.products(200, random);
+        List<Customer> customers = TestData.customers(5000);
+        SalesTable sales = TestData.sales(600_000, products, customers, random); // Несколько листьев.
+        CatalogIndex<Product> productIndex = TestData.productIndex(products);
+        SalesSketches sequential = SalesSketches.compute(sales, productIndex, SalesSketches.Config.DEFAULT, 1);
+        SalesSketches parallel = SalesSketches.compute(sales, productIndex, SalesSketches.Config.DEFAULT, 4);
+        // Count-Min и HyperLogLog сливаются без потерь, поэтому оценки совпадают точно.
+        assertEquals(sequential.getSalesCount(), parallel.getSalesCount());
+        assertEquals(sequential.distinctCustomers(), parallel.distinctCustomers());
+        assertEquals(sequential.distinctCustomersByMonth(), parallel.distinctCustomersByMonth());
+        assertEquals(sequential.purchaseAmountQuantile(0.5), parallel.purchaseAmountQuantile(0.5));
+        for (Product product : products) {
+            assertEquals(sequential.estimateCount(product.getProductId()), parallel.estimateCount(product.getProductId()));
+            assertEquals(sequential.distinctCustomers(product.getProductId()), parallel.distinctCustomers(product.getProductId()));
+        }
+    }
+}
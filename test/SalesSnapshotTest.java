@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel; // Граница последней полной строки sales.csv.
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*; // Временные CSV и файл снимка.
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesSnapshotTest { // Снимок используется, только если покрывает ту же часть sales.csv, что и загрузка.
+    @Test
+    void snapshotMustCoverExactlyTheLoadedBytes(@TempDir Path directory) throws IOException {
+        Path salesFile = directory.resolve("sales.csv");
+        Path productsFile = directory.resolve("products.csv");
+        Path customersFile = directory.resolve("customers.csv");
+        Files.write(productsFile, "productId,productName,price\n10,Товар 10,1.50\n20,Товар 20,1799.99\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(customersFile, "customerId,customerName\n1,Покупатель 1\n".getBytes(StandardCharsets.UTF_8));
+        // Как в исходном sales.csv: последняя строка без перевода строки.
+        Files.write(salesFile, ("saleId,saleDateTime,customerId,productId\n"
+                + "1,2024-11-01T10:00:00,1,10\n2,2024-11-02T10:00:00,1,20").getBytes(StandardCharsets.UTF_8));
+        long fileSize = Files.size(salesFile);
+        long completeLines;
+        try (FileChannel channel = FileChannel.open(salesFile, StandardOpenOption.READ)) {
+            completeLines = CsvLoader.completeLinesEnd(channel, 0, fileSize);
+        }
+        assertTrue(completeLines < fileSize);
+
+        // Запуск без слежения загружает и сохраняет в снимок весь файл, включая последнюю строку.
+        SalesSnapshot snapshot = new SalesSnapshot(directory.resolve("sales.snapshot"), salesFile, productsFile, customersFile);
+        List<Product> products = CsvLoader.load(productsFile, Product::fromCSV);
+        List<Customer> customers = CsvLoader.load(customersFile, Customer::fromCSV);
+        snapshot.save(new Sales(SalesTable.load(salesFile, fileSize, false), products, customers), fileSize);
+
+        Sales loaded = snapshot.load(false, fileSize);
+        assertNotNull(loaded);
+        assertEquals(2, loaded.getSalesTable().size());
+        assertEquals(180149, loaded.getTotalSalesMinor());
+        // Со слежением загрузка заканчивается на последней полной строке, и слежение начнет с нее:
+        // снимок с этой строкой применил бы ее второй раз, поэтому он не используется.
+        assertNull(snapshot.load(false, completeLines));
+    }
+}
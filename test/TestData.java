@@ -0,0 +1,46 @@
+import java.time.LocalDateTime; // Границы периода синтетических продаж.
+import java.util.*; // Коллекции List, ArrayList, Random.
+
+class TestData { // Синтетические справочники и продажи для проверок; одно зерно - один и тот же набор.
+    static final LocalDateTime FROM = LocalDateTime.of(2023, 1, 1, 0, 0);
+    static final LocalDateTime TO = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    static List<Product> products(int count, Random random) {
+        // ID не подряд, чтобы порядковый номер не совпадал с ID.
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(Product.ofMinorUnits(100 + 3 * i, "Товар " + i, 1 + random.nextInt(1_000_000)));
+        }
+        return products;
+    }
+
+    static List<Customer> customers(int count) {
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            customers.add(new Customer(1000 + 7 * i, "Покупатель " + i));
+        }
+        return customers;
+    }
+
+    static SalesTable sales(int rows, List<Product> products, List<Customer> customers, Random random) {
+        // Время продаж перемешано, продукты распределены неравномерно (есть явные лидеры).
+        long from = SalesTable.toEpochSecond(FROM);
+        long span = SalesTable.toEpochSecond(TO) - from;
+        SalesTable sales = new SalesTable(rows, false);
+        for (int row = 0; row < rows; row++) {
+            int product = (int) (products.size() * Math.pow(random.nextDouble(), 3));
+            int customer = random.nextInt(customers.size());
+            sales.append(row + 1, from + (long) (random.nextDouble() * span),
+                    customers.get(customer).getCustomerId(), products.get(product).getProductId());
+        }
+        return sales;
+    }
+
+    static CatalogIndex<Product> productIndex(List<Product> products) {
+        return new CatalogIndex<>(products, Product::getProductId, "Продукт");
+    }
+
+    static CatalogIndex<Customer> customerIndex(List<Customer> customers) {
+        return new CatalogIndex<>(customers, Customer::getCustomerId, "Покупатель");
+    }
+}
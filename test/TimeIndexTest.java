@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*; // Коллекции List, Random.
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeIndexTest { // Интервальные запросы индекса по времени совпадают с полным перебором продаж.
+    private final Random random = new Random(5);
+    private final List<Product> products = TestData.products(100, random);
+    private final List<Customer> customers = TestData.customers(100);
+    private final CatalogIndex<Product> productIndex = TestData.productIndex(products);
+    private final SalesTable sales = TestData.sales(20_000, products, customers, random); // Время перемешано.
+
+    private long[] bruteForce(LocalDateTime from, LocalDateTime to) {
+        // {количество, выручка} продаж в [from, to).
+        long lo = SalesTable.toEpochSecond(from);
+        long hi = SalesTable.toEpochSecond(to);
+        long[] result = new long[2];
+        for (int row = 0; row < sales.size(); row++) {
+            if (sales.epochSecond(row) >= lo && sales.epochSecond(row) < hi) {
+                result[0]++;
+                result[1] += productIndex.get(sales.productId(row)).getPriceMinor();
+            }
+        }
+        return result;
+    }
+
+    private LocalDateTime randomTime() {
+        // Иногда за пределами периода продаж.
+        long from = SalesTable.toEpochSecond(TestData.FROM.minusMonths(1));
+        long to = SalesTable.toEpochSecond(TestData.TO.plusMonths(1));
+        return SalesTable.toDateTime(from + (long) (random.nextDouble() * (to - from)));
+    }
+
+    @Test
+    void rangesMatchBruteForce() {
+        TimeIndex index = TimeIndex.build(sales, productIndex);
+        assertEquals(sales.size(), index.size());
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime a = randomTime();
+            LocalDateTime b = randomTime();
+            LocalDateTime from = a.isBefore(b) ? a : b;
+            LocalDateTime to = a.isBefore(b) ? b : a;
+            long[] expected = bruteForce(from, to);
+            assertEquals(expected[0], index.count(from, to), from + " .. " + to);
+            assertEquals(expected[1], index.revenue(from, to), from + " .. " + to);
+        }
+        assertEquals(0, index.count(TestData.TO, TestData.FROM)); // Пустой интервал.
+        assertEquals(0, index.revenue(TestData.TO, TestData.FROM));
+    }
+
+    @Test
+    void monthlyBucketsCoverAllSales() {
+        TimeIndex index = TimeIndex.build(sales, productIndex);
+        List<TimeIndex.Bucket> buckets = index.buckets(TestData.FROM, TestData.TO, TimeIndex.Granularity.MONTH);
+        assertEquals(24, buckets.size());
+        long count = 0;
+        long revenue = 0;
+        LocalDateTime start = TestData.FROM;
+        for (TimeIndex.Bucket bucket : buckets) {
+            assertEquals(start, bucket.getStart());
+            assertEquals(start.plusMonths(1), bucket.getEnd());
+            long[] expected = bruteForce(bucket.getStart(), bucket.getEnd());
+            assertEquals(expected[0], bucket.getCount());
+            assertEquals(expected[1], bucket.getRevenueMinor());
+            count += bucket.getCount();
+            revenue += bucket.getRevenueMinor();
+            start = bucket.getEnd();
+        }
+        long[] all = bruteForce(TestData.FROM, TestData.TO);
+        assertEquals(all[0], count);
+        assertEquals(all[1], revenue);
+    }
+
+    @Test
+    void partialBucketsAreClippedToRange() {
+        TimeIndex index = TimeIndex.build(sales, productIndex);
+        LocalDateTime from = LocalDateTime.of(2023, 3, 15, 12, 0);
+        LocalDateTime to = LocalDateTime.of(2023, 5, 2, 0, 0);
+        List<TimeIndex.Bucket> buckets = index.buckets(from, to, TimeIndex.Granularity.MONTH);
+        assertEquals(3, buckets.size());
+        assertEquals(LocalDateTime.of(2023, 3, 1, 0, 0), buckets.get(0).getStart()); // Начало интервала - по шагу.
+        assertEquals(bruteForce(from, LocalDateTime.of(2023, 4, 1, 0, 0))[0], buckets.get(0).getCount());
+        assertEquals(bruteForce(LocalDateTime.of(2023, 5, 1, 0, 0), to)[1], buckets.get(2).getRevenueMinor());
+    }
+
+    @Test
+    void granularityCountMatchesBuckets() {
+        TimeIndex index = TimeIndex.build(sales, productIndex);
+        for (TimeIndex.Granularity granularity : TimeIndex.Granularity.values()) {
+            for (int i = 0; i < 50; i++) {
+                LocalDateTime from = randomTime();
+                LocalDateTime to = granularity == TimeIndex.Granularity.HOUR ? from.plusDays(random.nextInt(30)) : randomTime();
+                assertEquals(index.buckets(from, to, granularity).size(), granularity.count(from, to), granularity + " " + from + " .. " + to);
+            }
+            LocalDateTime start = granularity.truncate(TestData.FROM);
+            assertEquals(1, granularity.count(start, granularity.next(start))); // Граница интервала не дает лишнего.
+        }
+    }
+
+    @Test
+    void appendKeepsOrderOrRequestsRebuild() {
+        TimeIndex index = TimeIndex.build(new SalesTable(false), productIndex);
+        assertNull(index.first());
+        for (int i = 0; i < 100; i++) { // Больше начальной емкости индекса.
+            assertTrue(index.append(1_000 + i, 10));
+        }
+        assertEquals(100, index.size());
+        assertEquals(1_000, index.revenue(SalesTable.toDateTime(0), SalesTable.toDateTime(2_000)));
+        assertEquals(SalesTable.toDateTime(1_099), index.last());
+        assertFalse(index.append(500, 10)); // Продажа старше последней: индекс нужно перестроить.
+        assertEquals(100, index.size());
+    }
+}